@@ -0,0 +1,224 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Background persistence for the Notes Application.
+ * Mutations only mark a note dirty in memory; a single background thread
+ * writes the dirty set to the operation log every interval, or as soon as
+ * the configured number of changes is pending. Several changes to the same
+ * note between flushes are coalesced into one log record. Compaction of
+ * the log into a snapshot also runs on the background thread, on request
+ * or by itself once a flush leaves the log at the store's compaction
+ * threshold, so the interactive loop never waits on disk I/O unless it
+ * asks to via awaitDurable().
+ */
+public class AutoSaver implements Closeable {
+    // The state AutoSaver persists
+    interface Store {
+        // Copy of all notes; atCapture runs before any further change can be made
+        List<NotesApp.Note> captureNotes(Runnable atCapture);
+        // Next id to persist in the compacted log
+        int nextId();
+        // Write a full snapshot of the given notes
+        void writeSnapshot(List<NotesApp.Note> notes) throws IOException;
+        // Number of log records at which the log should be compacted
+        int compactionThreshold();
+    }
+
+    // State captured together with a snapshot
+    private static class Capture {
+        int nextId;
+        List<Map.Entry<Integer, NotesApp.Note>> changes;
+    }
+
+    private final OperationLog log;
+    private final Store store;
+    private final NotesMetrics metrics;
+    private final int maxPendingChanges;
+    private final ScheduledExecutorService executor;
+
+    // Dirty notes since the last flush, by id; a null value means the note was deleted
+    private final LinkedHashMap<Integer, NotesApp.Note> pending = new LinkedHashMap<>();
+    private boolean flushQueued;
+    // After a failed automatic compaction, the log size at which to try again; only touched by the background thread
+    private int retryCompactionAt;
+
+    public AutoSaver(OperationLog log, Store store, NotesMetrics metrics, long intervalMillis, int maxPendingChanges) {
+        this.log = log;
+        this.store = store;
+        this.metrics = metrics;
+        this.maxPendingChanges = maxPendingChanges;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notes-autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushPending, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Mark a note as added or changed
+    public void recordPut(NotesApp.Note note) {
+        record(note.getId(), note);
+    }
+
+    // Mark a note as deleted
+    public void recordDelete(int id) {
+        record(id, null);
+    }
+
+    private void record(int id, NotesApp.Note note) {
+        synchronized (pending) {
+            pending.put(id, note);
+            if (pending.size() >= maxPendingChanges && !flushQueued) {
+                flushQueued = true;
+                executor.execute(this::flushPending);
+            }
+        }
+    }
+
+    // Number of changes not yet written to the log
+    public int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    // Write pending changes to the log in the background
+    public Future<?> flush() {
+        return executor.submit(this::flushPending);
+    }
+
+    // Block until every change recorded before this call is in the log and forced to the storage device
+    public void awaitDurable() throws IOException {
+        await(flushAndSync());
+    }
+
+    private Future<?> flushAndSync() {
+        return executor.submit(() -> {
+            flushPending();
+            log.sync();
+            return null;
+        });
+    }
+
+    // Snapshot all notes and truncate the log in the background
+    public Future<?> compact() {
+        return executor.submit(() -> {
+            try {
+                compactNow();
+            } catch (IOException e) {
+                System.err.println("Error saving notes: " + e.getMessage());
+            }
+        });
+    }
+
+    // Flush, compact if requested, and stop the background thread
+    public void close(boolean compact) throws IOException {
+        try {
+            await(compact ? compact() : flushAndSync());
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(false);
+    }
+
+    private void flushPending() {
+        List<Map.Entry<Integer, NotesApp.Note>> batch;
+        synchronized (pending) {
+            flushQueued = false;
+            if (pending.isEmpty()) return;
+            batch = drainPending();
+        }
+
+        long start = System.nanoTime();
+        File logFile = new File(log.getLogFile());
+        long lengthBefore = logFile.length();
+        try {
+            log.logChanges(batch);
+            metrics.addBytesWritten(logFile.length() - lengthBefore);
+            metrics.record(NotesMetrics.LOG_FLUSH, start);
+            compactIfLogLarge();
+        } catch (IOException e) {
+            System.err.println("Error writing to log: " + e.getMessage());
+            // Keep the changes for the next attempt unless the note changed again meanwhile
+            synchronized (pending) {
+                for (Map.Entry<Integer, NotesApp.Note> change : batch) {
+                    if (!pending.containsKey(change.getKey())) {
+                        pending.put(change.getKey(), change.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    // Compact once the log has reached the threshold, so a long-running process keeps its log bounded
+    private void compactIfLogLarge() {
+        if (log.getRecordCount() < Math.max(store.compactionThreshold(), retryCompactionAt)) return;
+        try {
+            compactNow();
+            retryCompactionAt = 0;
+        } catch (IOException e) {
+            System.err.println("Error saving notes: " + e.getMessage());
+            // Try again once the log has grown by another threshold rather than on every flush
+            retryCompactionAt = log.getRecordCount() + store.compactionThreshold();
+        }
+    }
+
+    private void compactNow() throws IOException {
+        Capture capture = new Capture();
+        List<NotesApp.Note> notes = store.captureNotes(() -> {
+            capture.nextId = store.nextId();
+            // Everything pending so far is part of the captured snapshot
+            synchronized (pending) {
+                capture.changes = drainPending();
+            }
+        });
+
+        try {
+            store.writeSnapshot(notes);
+        } catch (IOException e) {
+            // Fall back to logging the captured changes so they are not lost
+            log.logChanges(capture.changes);
+            throw e;
+        }
+        try {
+            log.truncate();
+            log.logSequence(capture.nextId);
+        } catch (IOException e) {
+            // The snapshot is complete; replaying the stale log over it is harmless
+            System.err.println("Error truncating log: " + e.getMessage());
+        }
+    }
+
+    // Copy and clear the dirty set; caller holds the pending lock
+    private List<Map.Entry<Integer, NotesApp.Note>> drainPending() {
+        List<Map.Entry<Integer, NotesApp.Note>> batch = new ArrayList<>(pending.size());
+        for (Map.Entry<Integer, NotesApp.Note> change : pending.entrySet()) {
+            batch.add(new AbstractMap.SimpleImmutableEntry<>(change.getKey(), change.getValue()));
+        }
+        pending.clear();
+        return batch;
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving notes");
+        } catch (ExecutionException e) {
+            throw new IOException("Error saving notes", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.*;
+
+/**
+ * Headless command mode for scripted bulk operations.
+ * Commands:
+ * - import [file]      read "title|content" lines (or exported note lines) and add them
+ * - search <term>      print matching notes in file format ("prefix*" searches titles)
+ * - rank <term>        print the best matches by BM25 score, best first
+ * - between <from> <to> print notes timestamped in the range, oldest first
+ * - latest [n]         print the n most recent notes, newest first
+ * - export [file]      write every note in file format
+ * - delete [id...]     delete the given ids, or ids read one per line from stdin
+ * Input is streamed and applied in batches; results go through a single
+ * buffered writer, and progress messages go to stderr so stdout can be
+ * piped. A keyword search of a compressed snapshot runs without loading
+ * the notes, reading only the blocks whose Bloom filters admit the term.
+ */
+public class BatchCli {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int DEFAULT_LATEST = 10;
+
+    private final NotesApp app;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final PrintStream err;
+
+    public BatchCli(NotesApp app, InputStream in, OutputStream out, PrintStream err) {
+        this.app = app;
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16));
+        this.err = err;
+    }
+
+    public static boolean isCommand(String name) {
+        return Arrays.asList("import", "search", "rank", "between", "latest", "export", "delete").contains(name);
+    }
+
+    // Run a command; returns the process exit code
+    public int run(String[] args) {
+        try {
+            switch (args[0]) {
+                case "import": return importNotes(args);
+                case "search": return search(args);
+                case "rank": return rank(args);
+                case "between": return between(args);
+                case "latest": return latest(args);
+                case "export": return export(args);
+                case "delete": return delete(args);
+                default: return usage();
+            }
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        } finally {
+            out.flush();
+        }
+    }
+
+    private int importNotes(String[] args) throws IOException {
+        int imported = 0;
+        int skipped = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = args.length > 1 ? openFile(args[1]) : in) {
+            List<String[]> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] entry = parseImportLine(line.trim());
+                if (entry == null) {
+                    if (!line.trim().isEmpty()) {
+                        err.println("Skipped line " + lineNumber + ": expected title|content without '|' in either field");
+                    }
+                    skipped++;
+                    continue;
+                }
+                batch.add(entry);
+                if (batch.size() == BATCH_SIZE) {
+                    imported += app.addNotes(batch).size();
+                    batch.clear();
+                }
+            }
+            imported += app.addNotes(batch).size();
+        }
+        err.println("Imported " + imported + " notes" + (skipped > 0 ? " (" + skipped + " lines skipped)" : ""));
+        return 0;
+    }
+
+    // Title and content of an import line: either an exported note line or "title|content";
+    // null when the line is neither, or when a field could not be written back as a note line
+    static String[] parseImportLine(String line) {
+        if (line.isEmpty()) return null;
+        try {
+            NotesApp.Note note = NotesApp.Note.fromFileFormat(line);
+            if (note != null) {
+                return storable(note.getTitle(), note.getContent());
+            }
+        } catch (RuntimeException e) {
+            // Not an exported note; fall through to title|content
+        }
+        int separator = line.indexOf('|');
+        if (separator <= 0 || separator == line.length() - 1) return null;
+        String title = line.substring(0, separator).trim();
+        String content = line.substring(separator + 1).trim();
+        return title.isEmpty() || content.isEmpty() ? null : storable(title, content);
+    }
+
+    private static String[] storable(String title, String content) {
+        return NotesHttpServer.isStorable(title) && NotesHttpServer.isStorable(content)
+                ? new String[] {title, content} : null;
+    }
+
+    // Whether the arguments are a keyword search, which can run on the files without a loaded app
+    public static boolean isKeywordSearch(String[] args) {
+        return args[0].equals("search") && args.length > 1 && !searchTerm(args).endsWith("*");
+    }
+
+    private static String searchTerm(String[] args) {
+        return String.join(" ", Arrays.asList(args).subList(1, args.length)).trim().toLowerCase();
+    }
+
+    private int search(String[] args) throws IOException {
+        if (args.length < 2) return usage();
+        String term = searchTerm(args);
+        // Without an app the notes are searched on disk, skipping snapshot blocks that cannot match
+        List<NotesApp.Note> matches = app != null ? app.findNotes(term) : NotesApp.searchOnDisk(null, term);
+        for (NotesApp.Note note : matches) {
+            out.println(note.toFileFormat());
+        }
+        err.println(matches.size() + " notes found matching '" + term + "'");
+        return 0;
+    }
+
+    private int rank(String[] args) {
+        if (args.length < 2) return usage();
+        String query = searchTerm(args);
+        List<NotesApp.Note> ranked = app.getStore().rankedSearch(query, NotesApp.RANKED_RESULTS);
+        for (NotesApp.Note note : ranked) {
+            out.println(note.toFileFormat());
+        }
+        err.println(ranked.size() + " best notes matching '" + query + "'");
+        return 0;
+    }
+
+    private int between(String[] args) {
+        if (args.length != 3) return usage();
+        List<NotesApp.Note> matches;
+        try {
+            matches = app.getStore().findBetween(NotesApp.parseTimeBound(args[1], false),
+                    NotesApp.parseTimeBound(args[2], true), Integer.MAX_VALUE);
+        } catch (DateTimeException e) {
+            err.println("Invalid date: " + e.getMessage());
+            return 2;
+        }
+        for (NotesApp.Note note : matches) {
+            out.println(note.toFileFormat());
+        }
+        err.println(matches.size() + " notes found between " + args[1] + " and " + args[2]);
+        return 0;
+    }
+
+    private int latest(String[] args) {
+        int count;
+        try {
+            count = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LATEST;
+        } catch (NumberFormatException e) {
+            return usage();
+        }
+        if (count < 0) return usage();
+        List<NotesApp.Note> notes = app.getStore().latest(count);
+        for (NotesApp.Note note : notes) {
+            out.println(note.toFileFormat());
+        }
+        err.println(notes.size() + " latest notes");
+        return 0;
+    }
+
+    private int export(String[] args) throws IOException {
+        PrintWriter target = args.length > 1
+                ? new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(args[1]), StandardCharsets.UTF_8), 1 << 16))
+                : out;
+        int exported = 0;
+        for (NotesApp.Note note : app.allNotes()) {
+            target.println(note.toFileFormat());
+            exported++;
+        }
+        if (target != out) {
+            target.close();
+        }
+        if (target.checkError()) {
+            throw new IOException("Error writing export");
+        }
+        err.println("Exported " + exported + " notes");
+        return 0;
+    }
+
+    private int delete(String[] args) throws IOException {
+        int deleted = 0;
+        int missing = 0;
+        List<String> ids = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : null;
+        Iterator<String> source = ids != null ? ids.iterator() : in.lines().iterator();
+        while (source.hasNext()) {
+            String value = source.next().trim();
+            if (value.isEmpty()) continue;
+            try {
+                if (app.deleteNoteById(Integer.parseInt(value))) {
+                    deleted++;
+                } else {
+                    missing++;
+                }
+            } catch (NumberFormatException e) {
+                err.println("Not a valid ID: " + value);
+                missing++;
+            }
+        }
+        err.println("Deleted " + deleted + " notes" + (missing > 0 ? " (" + missing + " not found)" : ""));
+        return 0;
+    }
+
+    private static BufferedReader openFile(String path) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private int usage() {
+        err.println("Usage: java NotesApp <command> [args]");
+        err.println("  import [file]    add notes from \"title|content\" or exported lines (default: stdin)");
+        err.println("  search <term>    print matching notes (prefix* matches title prefixes)");
+        err.println("  rank <term>      print the " + NotesApp.RANKED_RESULTS + " best matches, best first (-Dnotes.rankedResults)");
+        err.println("  between <from> <to>  print notes in a date range (yyyy-MM-dd or yyyy-MM-ddTHH:mm[:ss])");
+        err.println("  latest [n]       print the n most recent notes (default: " + DEFAULT_LATEST + ")");
+        err.println("  export [file]    write all notes (default: stdout)");
+        err.println("  delete [id...]   delete notes by id (default: ids from stdin)");
+        return 2;
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Binary notes file read through memory-mapped buffers.
+ * Layout (big-endian):
+ * - Header: magic "NOTB", int version, int note count, long index offset
+ * - Records: int id, long epoch millis, int title length + UTF-8 bytes,
+ *   int content length + UTF-8 bytes
+ * - Trailing index: (int id, long record offset) pairs sorted by id
+ * The file is mapped in segments addressed by long offsets (see
+ * MappedFile), so it may exceed 2 GB. Opening only maps the file and reads
+ * the header, and get() decodes a single record, but loading the store
+ * still walks every record (all but the content with lazy content), so
+ * start-up time grows with the number of notes.
+ */
+public class BinaryNotesFile {
+    static final int MAGIC = 0x4E4F5442; // "NOTB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    static final int INDEX_ENTRY_SIZE = 4 + 8;
+
+    private final MappedFile mapped;
+    private final int count;
+    private final long indexOffset;
+
+    private BinaryNotesFile(MappedFile mapped, int count, long indexOffset) {
+        this.mapped = mapped;
+        this.count = count;
+        this.indexOffset = indexOffset;
+    }
+
+    // Map an existing binary notes file
+    public static BinaryNotesFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a binary notes file: " + path);
+            }
+            MappedFile mapped = MappedFile.map(channel);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary notes file: " + path);
+            }
+            if (mapped.getInt(4) != VERSION) {
+                throw new IOException("Unsupported binary notes version: " + mapped.getInt(4));
+            }
+            int count = mapped.getInt(8);
+            long indexOffset = mapped.getLong(12);
+            if (count < 0 || indexOffset < HEADER_SIZE || indexOffset + (long) count * INDEX_ENTRY_SIZE > size) {
+                throw new IOException("Truncated binary notes file: " + path);
+            }
+            return new BinaryNotesFile(mapped, count, indexOffset);
+        }
+    }
+
+    // Write notes in iteration order, then atomically replace the target file
+    public static void write(Path path, Iterable<NotesApp.Note> notes) throws IOException {
+        AtomicFile.replace(path, channel -> {
+            // Record offsets in file order, and (id << 32 | record number) pairs to sort into the id index
+            long[] offsets = new long[16];
+            long[] ids = new long[16];
+            int count = 0;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.write(new byte[HEADER_SIZE]);
+            long offset = HEADER_SIZE;
+            for (NotesApp.Note note : notes) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                offsets[count] = offset;
+                ids[count] = ((long) note.getId() << 32) | count;
+                count++;
+                byte[] title = note.getTitle().getBytes(StandardCharsets.UTF_8);
+                byte[] content = note.getContentOnce().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(note.getId());
+                out.writeLong(note.getTimestampMillis());
+                out.writeInt(title.length);
+                out.write(title);
+                out.writeInt(content.length);
+                out.write(content);
+                offset += 4 + 8 + 4 + title.length + 4 + content.length;
+            }
+
+            long indexOffset = offset;
+            Arrays.sort(ids, 0, count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt((int) (ids[i] >> 32));
+                out.writeLong(offsets[(int) ids[i]]);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(count).putLong(indexOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        });
+    }
+
+    public int size() { return count; }
+
+    // Decode the note with the given id, or null; binary search over the mapped index
+    public NotesApp.Note get(int id) {
+        long offset = offsetOf(id);
+        return offset < 0 ? null : decode(offset);
+    }
+
+    // Record offset of the note with the given id, or -1
+    public long offsetOf(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pos = indexOffset + (long) mid * INDEX_ENTRY_SIZE;
+            int midId = mapped.getInt(pos);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mapped.getLong(pos + 4);
+            }
+        }
+        return -1;
+    }
+
+    // Decode every note in file order
+    public void forEach(Consumer<NotesApp.Note> action) {
+        long offset = HEADER_SIZE;
+        while (offset < indexOffset) {
+            action.accept(decode(offset));
+            offset = nextRecord(offset);
+        }
+    }
+
+    // Decode the record starting at the given offset
+    public NotesApp.Note decode(long offset) {
+        int id = mapped.getInt(offset);
+        long millis = mapped.getLong(offset + 4);
+        int titleLength = mapped.getInt(offset + 12);
+        String title = mapped.readString(offset + 16, titleLength);
+        long contentPos = offset + 16 + titleLength;
+        String content = mapped.readString(contentPos + 4, mapped.getInt(contentPos));
+        return new NotesApp.Note(id, title, content, millis);
+    }
+
+    // Decode every note in file order, leaving content to be loaded through the cache
+    public void forEachLazy(ContentCache cache, Consumer<NotesApp.Note> action) {
+        ContentCache.Loader source = cache.asLoader();
+        long offset = HEADER_SIZE;
+        while (offset < indexOffset) {
+            action.accept(decodeLazy(offset, source));
+            offset = nextRecord(offset);
+        }
+    }
+
+    // Decode id, title and timestamp of a record; content stays in the file and is read through the source
+    public NotesApp.Note decodeLazy(long offset, ContentCache.Loader source) {
+        int id = mapped.getInt(offset);
+        long millis = mapped.getLong(offset + 4);
+        String title = mapped.readString(offset + 16, mapped.getInt(offset + 12));
+        return new NotesApp.Note(id, title, millis, source, offset);
+    }
+
+    // Content of the record starting at the given offset
+    public String readContent(long offset) {
+        long contentPos = offset + 16 + mapped.getInt(offset + 12);
+        return mapped.readString(contentPos + 4, mapped.getInt(contentPos));
+    }
+
+    // Offset of the record after the one starting at the given offset
+    long nextRecord(long offset) {
+        long contentPos = offset + 16 + mapped.getInt(offset + 12);
+        return contentPos + 4 + mapped.getInt(contentPos);
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fixed-size Bloom filter over 64-bit key hashes.
+ * A key sets HASHES bits chosen by double hashing its hash, so a lookup
+ * answers "definitely absent" or "possibly present"; with BITS_PER_KEY bits
+ * per distinct key about 1% of absent keys come back as possibly present.
+ * The bits are kept as big-endian longs, so a filter written with writeTo()
+ * can be probed in place in a mapped file with the static mightContain().
+ * Hashes must be stable across runs, which is why keys are hashed with
+ * hash() rather than String.hashCode().
+ */
+public class BloomFilter {
+    static final int HASHES = 7;
+    static final int BITS_PER_KEY = 10;
+    static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] words;
+
+    // A filter sized for the given number of distinct keys
+    public BloomFilter(int expectedKeys) {
+        this.words = new long[Math.max(1, (int) (((long) expectedKeys * BITS_PER_KEY + 63) / 64))];
+    }
+
+    public void add(long hash) {
+        long bits = (long) words.length * 64;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = bitIndex(hash, i, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        long bits = (long) words.length * 64;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = bitIndex(hash, i, bits);
+            if ((words[(int) (bit >>> 6)] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    public int wordCount() {
+        return words.length;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    // Probe a filter of wordCount words stored by writeTo() at the given file position
+    public static boolean mightContain(MappedFile file, long position, int wordCount, long hash) {
+        long bits = (long) wordCount * 64;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = bitIndex(hash, i, bits);
+            if ((file.getLong(position + (bit >>> 6) * 8) & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    // Stable 64-bit hash of the first length chars of text
+    public static long hash(CharSequence text, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    // FNV-1a state after one more char; mix() the state to get the hash of the chars so far
+    static long extend(long state, char c) {
+        return (state ^ c) * FNV_PRIME;
+    }
+
+    // Spread every input bit over the whole hash (MurmurHash3 finalizer)
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53ef63bL;
+        return hash ^ hash >>> 33;
+    }
+
+    // i-th probe position: the two halves of the hash combined as h1 + i * h2
+    private static long bitIndex(long hash, int i, long bits) {
+        long combined = (hash >>> 32) + i * (hash & 0xffffffffL);
+        return Math.floorMod(combined, bits);
+    }
+}
@@ -0,0 +1,151 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * NoteTable that keeps notes as primitive columns instead of Note objects.
+ * Each position in insertion order is a row of an int[] of ids, a long[]
+ * of timestamps and a long[] reference into a TextArena holding the
+ * note's UTF-8 title and content back to back, with int[] title and
+ * content lengths. A stored note therefore costs a few dozen bytes plus
+ * its text, with no object headers, String wrappers or per-note byte
+ * arrays. The arena can live off the heap, leaving the collector only a
+ * handful of primitive arrays to scan however many notes there are.
+ * A read returns a lightweight Note whose title is decoded and whose
+ * content is read from the arena when asked for, so the layout suits
+ * large collections of mostly idle notes. Replaced and deleted text stays
+ * in the arena until dead bytes outgrow live ones, when it is compacted.
+ */
+public class ColumnarNoteTable extends NoteTable {
+    // Title length of a deleted position
+    private static final int DELETED = -1;
+
+    private final TextArena text;
+    private int[] ids;
+    private long[] timestamps;
+    private long[] textRefs;
+    private int[] titleLengths;
+    private int[] contentLengths;
+    // Highest position ever written plus one; rows past it are unused
+    private int rows;
+
+    public ColumnarNoteTable() {
+        this(false);
+    }
+
+    // Keep note text in direct buffers outside the Java heap when offHeap is set
+    public ColumnarNoteTable(boolean offHeap) {
+        this(MIN_CAPACITY, offHeap);
+    }
+
+    public ColumnarNoteTable(int expectedSize, boolean offHeap) {
+        super(expectedSize, false);
+        this.text = new TextArena(offHeap);
+        allocateColumns(Math.max(MIN_CAPACITY, expectedSize));
+    }
+
+    public boolean isOffHeap() {
+        return text.isOffHeap();
+    }
+
+    // Bytes reserved for note text, on or off the heap
+    public long getTextCapacityBytes() {
+        return text.getCapacityBytes();
+    }
+
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        text.compact(textRefs, titleLengths, contentLengths, rows, true);
+    }
+
+    @Override
+    protected NotesApp.Note noteAt(int pos) {
+        int titleLength = titleLengths[pos];
+        if (titleLength == DELETED) return null;
+        long ref = textRefs[pos];
+        return new NotesApp.Note(ids[pos], text.read(ref, 0, titleLength), timestamps[pos],
+                text.chunk(ref), TextArena.loaderRef(ref, titleLength, contentLengths[pos]));
+    }
+
+    @Override
+    protected boolean isLive(int pos) {
+        return titleLengths[pos] != DELETED;
+    }
+
+    @Override
+    protected int idAt(int pos) {
+        return ids[pos];
+    }
+
+    @Override
+    protected void setNote(int pos, NotesApp.Note note) {
+        clearNote(pos);
+        byte[] title = note.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] content = note.getContent().getBytes(StandardCharsets.UTF_8);
+        if (text.needsCompaction()) {
+            text.compact(textRefs, titleLengths, contentLengths, rows, false);
+        }
+        ids[pos] = note.getId();
+        timestamps[pos] = note.getTimestampMillis();
+        textRefs[pos] = text.add(title, content);
+        titleLengths[pos] = title.length;
+        contentLengths[pos] = content.length;
+        rows = Math.max(rows, pos + 1);
+    }
+
+    @Override
+    protected void clearNote(int pos) {
+        if (pos < rows && titleLengths[pos] != DELETED) {
+            text.free(titleLengths[pos] + contentLengths[pos]);
+            titleLengths[pos] = DELETED;
+        }
+    }
+
+    @Override
+    protected void moveNote(int from, int to) {
+        ids[to] = ids[from];
+        timestamps[to] = timestamps[from];
+        textRefs[to] = textRefs[from];
+        titleLengths[to] = titleLengths[from];
+        contentLengths[to] = contentLengths[from];
+        // The text now belongs to the new position; the old one must not free it
+        titleLengths[from] = DELETED;
+    }
+
+    @Override
+    protected void clearRange(int from, int to) {
+        for (int pos = from; pos < Math.min(to, rows); pos++) {
+            clearNote(pos);
+        }
+        if (from == 0) {
+            text.clear();
+        }
+        rows = Math.min(rows, from);
+    }
+
+    @Override
+    protected int capacity() {
+        return ids.length;
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        textRefs = Arrays.copyOf(textRefs, capacity);
+        titleLengths = Arrays.copyOf(titleLengths, capacity);
+        contentLengths = Arrays.copyOf(contentLengths, capacity);
+        if (capacity > rows) {
+            Arrays.fill(titleLengths, rows, capacity, DELETED);
+        }
+    }
+
+    private void allocateColumns(int capacity) {
+        ids = new int[capacity];
+        timestamps = new long[capacity];
+        textRefs = new long[capacity];
+        titleLengths = new int[capacity];
+        contentLengths = new int[capacity];
+        Arrays.fill(titleLengths, DELETED);
+    }
+}
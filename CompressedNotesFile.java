@@ -0,0 +1,388 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed notes file.
+ * Notes are written in the notes.txt line format, grouped into blocks of
+ * about 64 KB that are each Deflate-compressed on their own, so a load
+ * reads far fewer bytes for repetitive prose and a single note can be
+ * fetched by inflating just its block.
+ * Each block is followed by a Bloom filter over every prefix, up to
+ * FILTER_PREFIX chars, of the tokens in its notes, so a keyword search
+ * inflates only the blocks that can hold every query token and skips the
+ * rest unread; a rare term typically touches a handful of blocks.
+ * Layout (big-endian):
+ * - Header: magic "NOTZ", int version, int note count, int block count,
+ *   long index offset
+ * - Blocks: compressed UTF-8 note lines, then the block's Bloom filter
+ *   (version 2 only)
+ * - Block table at the index offset: (long offset, int compressed length,
+ *   int uncompressed length, int filter length in longs) per block; version
+ *   1 files have no filter length, and every block is a search candidate
+ * - Id index: (int id, int block) pairs sorted by id
+ * The file is mapped in segments addressed by long offsets (see
+ * MappedFile), so it may exceed 2 GB.
+ */
+public class CompressedNotesFile {
+    static final int MAGIC = 0x4E4F545A; // "NOTZ"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    static final int BLOCK_ENTRY_SIZE = 8 + 4 + 4 + 4;
+    static final int V1_BLOCK_ENTRY_SIZE = 8 + 4 + 4;
+    static final int INDEX_ENTRY_SIZE = 4 + 4;
+    static final int BLOCK_SIZE = 64 * 1024;
+    // Longer tokens are filtered on this many leading chars, which a prefix query of any length still hits
+    static final int FILTER_PREFIX = 8;
+
+    private final MappedFile mapped;
+    private final int count;
+    private final int blockCount;
+    private final long indexOffset;
+    private final int blockEntrySize;
+
+    private CompressedNotesFile(MappedFile mapped, int count, int blockCount, long indexOffset, int blockEntrySize) {
+        this.mapped = mapped;
+        this.count = count;
+        this.blockCount = blockCount;
+        this.indexOffset = indexOffset;
+        this.blockEntrySize = blockEntrySize;
+    }
+
+    // Map an existing compressed notes file
+    public static CompressedNotesFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a compressed notes file: " + path);
+            }
+            MappedFile mapped = MappedFile.map(channel);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a compressed notes file: " + path);
+            }
+            int version = mapped.getInt(4);
+            if (version != VERSION && version != 1) {
+                throw new IOException("Unsupported compressed notes version: " + version);
+            }
+            int blockEntrySize = version == 1 ? V1_BLOCK_ENTRY_SIZE : BLOCK_ENTRY_SIZE;
+            int count = mapped.getInt(8);
+            int blockCount = mapped.getInt(12);
+            long indexOffset = mapped.getLong(16);
+            if (count < 0 || blockCount < 0 || indexOffset < HEADER_SIZE || indexOffset + (long) blockCount * blockEntrySize + (long) count * INDEX_ENTRY_SIZE > size) {
+                throw new IOException("Truncated compressed notes file: " + path);
+            }
+            return new CompressedNotesFile(mapped, count, blockCount, indexOffset, blockEntrySize);
+        }
+    }
+
+    // Write notes in iteration order, then atomically replace the target file
+    public static void write(Path path, Iterable<NotesApp.Note> notes) throws IOException {
+        AtomicFile.replace(path, channel -> {
+            // Index entries packed as (id << 32 | block) so sorting orders them by id
+            long[] index = new long[16];
+            int count = 0;
+            List<long[]> blocks = new ArrayList<>();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                out.write(new byte[HEADER_SIZE]);
+                long offset = HEADER_SIZE;
+                ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 4096);
+                Set<String> blockTerms = new HashSet<>();
+                byte[] compressed = new byte[BLOCK_SIZE];
+                for (NotesApp.Note note : notes) {
+                    if (count == index.length) {
+                        index = Arrays.copyOf(index, count * 2);
+                    }
+                    index[count++] = ((long) note.getId() << 32) | blocks.size();
+                    String content = note.getContentOnce();
+                    byte[] line = (note.toFileFormat(content) + "\n").getBytes(StandardCharsets.UTF_8);
+                    block.write(line, 0, line.length);
+                    blockTerms.addAll(InvertedIndex.tokenize(note.getTitle()));
+                    blockTerms.addAll(InvertedIndex.tokenize(content));
+                    if (block.size() >= BLOCK_SIZE) {
+                        offset = writeBlock(out, offset, block, blockTerms, deflater, compressed, blocks);
+                    }
+                }
+                if (block.size() > 0) {
+                    offset = writeBlock(out, offset, block, blockTerms, deflater, compressed, blocks);
+                }
+
+                long indexOffset = offset;
+                for (long[] entry : blocks) {
+                    out.writeLong(entry[0]);
+                    out.writeInt((int) entry[1]);
+                    out.writeInt((int) entry[2]);
+                    out.writeInt((int) entry[3]);
+                }
+                Arrays.sort(index, 0, count);
+                for (int i = 0; i < count; i++) {
+                    out.writeInt((int) (index[i] >> 32));
+                    out.writeInt((int) index[i]);
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .putInt(MAGIC).putInt(VERSION).putInt(count).putInt(blocks.size()).putLong(indexOffset);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                deflater.end();
+            }
+        });
+    }
+
+    // Compress and write one block and its filter, recording (offset, compressed length, uncompressed length, filter longs)
+    private static long writeBlock(DataOutputStream out, long offset, ByteArrayOutputStream block, Set<String> terms,
+                                   Deflater deflater, byte[] compressed, List<long[]> blocks) throws IOException {
+        deflater.reset();
+        deflater.setInput(block.toByteArray());
+        deflater.finish();
+        long length = 0;
+        while (!deflater.finished()) {
+            int n = deflater.deflate(compressed);
+            out.write(compressed, 0, n);
+            length += n;
+        }
+        BloomFilter filter = buildFilter(terms);
+        filter.writeTo(out);
+        blocks.add(new long[] {offset, length, block.size(), filter.wordCount()});
+        block.reset();
+        terms.clear();
+        return offset + length + filter.wordCount() * 8L;
+    }
+
+    // Filter holding every prefix of the terms, up to FILTER_PREFIX chars
+    private static BloomFilter buildFilter(Set<String> terms) {
+        long[] keys = new long[16];
+        int size = 0;
+        for (String term : terms) {
+            long state = BloomFilter.FNV_OFFSET;
+            for (int i = 0; i < Math.min(term.length(), FILTER_PREFIX); i++) {
+                state = BloomFilter.extend(state, term.charAt(i));
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                }
+                keys[size++] = BloomFilter.mix(state);
+            }
+        }
+        // Terms share most of their short prefixes, so size the filter by the distinct keys
+        Arrays.sort(keys, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) distinct++;
+        }
+        BloomFilter filter = new BloomFilter(distinct);
+        for (int i = 0; i < size; i++) {
+            filter.add(keys[i]);
+        }
+        return filter;
+    }
+
+    public int size() { return count; }
+
+    public int blockCount() { return blockCount; }
+
+    // Whether blocks carry Bloom filters (false for version 1 files)
+    public boolean isFiltered() { return blockEntrySize == BLOCK_ENTRY_SIZE; }
+
+    // Blocks whose filters admit every query token; all blocks when the file has no filters
+    public BitSet candidateBlocks(List<String> queryTokens) {
+        BitSet candidates = new BitSet(blockCount);
+        candidates.set(0, blockCount);
+        if (!isFiltered()) return candidates;
+        long[] keys = new long[queryTokens.size()];
+        for (int i = 0; i < keys.length; i++) {
+            String token = queryTokens.get(i);
+            keys[i] = BloomFilter.hash(token, Math.min(token.length(), FILTER_PREFIX));
+        }
+        for (int block = 0; block < blockCount; block++) {
+            long entry = indexOffset + (long) block * blockEntrySize;
+            long filter = mapped.getLong(entry) + mapped.getInt(entry + 8);
+            int words = mapped.getInt(entry + 16);
+            for (long key : keys) {
+                if (!BloomFilter.mightContain(mapped, filter, words, key)) {
+                    candidates.clear(block);
+                    break;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Notes matching the query as InvertedIndex.search() would, in file order; inflates only candidate blocks
+    public List<NotesApp.Note> search(String query) {
+        List<String> queryTokens = InvertedIndex.tokenize(query);
+        String term = query.toLowerCase();
+        List<NotesApp.Note> matches = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        try {
+            BitSet candidates = candidateBlocks(queryTokens);
+            for (int block = candidates.nextSetBit(0); block >= 0; block = candidates.nextSetBit(block + 1)) {
+                for (NotesApp.Note note : readBlock(block, inflater)) {
+                    if (matches(note, queryTokens, term)) {
+                        matches.add(note);
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return matches;
+    }
+
+    // Whether a note matches a lowercase query and its tokens; with nothing indexable in the query
+    // it is matched as a substring, like NotesStore.search()
+    static boolean matches(NotesApp.Note note, List<String> queryTokens, String term) {
+        if (queryTokens.isEmpty()) {
+            return note.getTitle().toLowerCase().contains(term) || note.getContent().toLowerCase().contains(term);
+        }
+        return InvertedIndex.matches(queryTokens, note.getTitle(), note.getContent());
+    }
+
+    // The note with the given id, or null; inflates only the block holding it
+    public NotesApp.Note get(int id) {
+        int block = blockOf(id);
+        if (block < 0) return null;
+        Inflater inflater = new Inflater();
+        String text;
+        try {
+            text = inflate(block, inflater);
+        } finally {
+            inflater.end();
+        }
+        // Only the matching line is parsed in full
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = text.length();
+            if (lineId(text, lineStart, lineEnd) == id) {
+                return NotesApp.Note.fromFileFormat(text.substring(lineStart, lineEnd).trim());
+            }
+            lineStart = lineEnd + 1;
+        }
+        return null;
+    }
+
+    // Leading id of a note line, or -1
+    private static long lineId(String text, int from, int to) {
+        long id = 0;
+        int i = from;
+        while (i < to && text.charAt(i) <= ' ') i++;
+        int digits = i;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '|') return i > digits ? id : -1;
+            if (c < '0' || c > '9' || i - digits > 10) return -1;
+            id = id * 10 + (c - '0');
+        }
+        return -1;
+    }
+
+    // Block holding the note with the given id, or -1; binary search over the mapped id index
+    public int blockOf(int id) {
+        long ids = indexOffset + (long) blockCount * blockEntrySize;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pos = ids + (long) mid * INDEX_ENTRY_SIZE;
+            int midId = mapped.getInt(pos);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mapped.getInt(pos + 4);
+            }
+        }
+        return -1;
+    }
+
+    // Decode every note in file order, one block at a time
+    public void forEach(Consumer<NotesApp.Note> action) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            for (int block = 0; block < blockCount; block++) {
+                for (NotesApp.Note note : readBlock(block, inflater)) {
+                    action.accept(note);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Inflate and parse the notes of one block
+    public List<NotesApp.Note> readBlock(int block) {
+        Inflater inflater = new Inflater();
+        try {
+            return readBlock(block, inflater);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private List<NotesApp.Note> readBlock(int block, Inflater inflater) {
+        return parseLines(inflate(block, inflater));
+    }
+
+    // Uncompressed text of one block
+    private String inflate(int block, Inflater inflater) {
+        long entry = indexOffset + (long) block * blockEntrySize;
+        long offset = mapped.getLong(entry);
+        int compressedLength = mapped.getInt(entry + 8);
+        byte[] text = new byte[mapped.getInt(entry + 12)];
+
+        inflater.reset();
+        inflater.setInput(mapped.slice(offset, compressedLength));
+        try {
+            int filled = 0;
+            while (filled < text.length && !inflater.finished()) {
+                int n = inflater.inflate(text, filled, text.length - filled);
+                if (n == 0 && inflater.needsInput()) break;
+                filled += n;
+            }
+            if (filled != text.length) {
+                throw new UncheckedIOException(new IOException("Corrupt compressed block " + block));
+            }
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Corrupt compressed block " + block, e));
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static List<NotesApp.Note> parseLines(String text) {
+        List<NotesApp.Note> notes = new ArrayList<>();
+        int lineStart = 0;
+        int limit = text.length();
+        for (int i = 0; i <= limit; i++) {
+            if (i == limit || text.charAt(i) == '\n') {
+                int from = lineStart;
+                int to = i;
+                while (from < to && text.charAt(from) <= ' ') from++;
+                while (to > from && text.charAt(to - 1) <= ' ') to--;
+                if (to > from) {
+                    NotesApp.Note note = NotesApp.Note.fromFileFormat(text, from, to);
+                    if (note != null) {
+                        notes.add(note);
+                    }
+                }
+                lineStart = i + 1;
+            }
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.*;
+
+/**
+ * Bounded LRU cache for note content that is loaded on demand.
+ * Lazily loaded notes keep only a reference (for example a record offset
+ * in a mapped binary file) and fetch their content through this cache.
+ * The cache is bounded by the total number of cached characters and keeps
+ * hit, miss and eviction counters. Reads that touch every note once, such as
+ * indexing at load time or a substring scan, go through loadOnce() so they
+ * do not flush the entries that are actually being reused.
+ */
+public class ContentCache {
+    // Loads the content for a reference on a cache miss
+    interface Loader {
+        String load(long ref);
+
+        // Content for a one-off read that should not displace cached content
+        default String loadOnce(long ref) {
+            return load(ref);
+        }
+    }
+
+    private final long maxChars;
+    private final Loader loader;
+    private final LinkedHashMap<Long, String> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedChars;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ContentCache(long maxChars, Loader loader) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxChars);
+        }
+        this.maxChars = maxChars;
+        this.loader = loader;
+    }
+
+    public synchronized String get(long ref) {
+        String content = entries.get(ref);
+        if (content != null) {
+            hits++;
+            return content;
+        }
+
+        misses++;
+        content = loader.load(ref);
+        if (content.length() <= maxChars) {
+            entries.put(ref, content);
+            cachedChars += content.length();
+            evictOverflow();
+        }
+        return content;
+    }
+
+    // Loader for lazily loaded notes that reads through this cache
+    public Loader asLoader() {
+        return new Loader() {
+            @Override
+            public String load(long ref) { return get(ref); }
+
+            @Override
+            public String loadOnce(long ref) { return getOnce(ref); }
+        };
+    }
+
+    // Cached content if present, otherwise read straight from the loader without caching it
+    public String getOnce(long ref) {
+        synchronized (this) {
+            String content = entries.get(ref);
+            if (content != null) {
+                hits++;
+                return content;
+            }
+        }
+        return loader.load(ref);
+    }
+
+    // Drop least recently used entries until the cache is within its bound
+    private void evictOverflow() {
+        Iterator<String> it = entries.values().iterator();
+        while (cachedChars > maxChars && it.hasNext()) {
+            cachedChars -= it.next().length();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedChars = 0;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getCachedChars() { return cachedChars; }
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Content cache: %d entries, %d/%d chars, %d hits, %d misses, %d evictions",
+                entries.size(), cachedChars, maxChars, hits, misses, evictions);
+    }
+}
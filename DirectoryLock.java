@@ -0,0 +1,54 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exclusive lock on a notes data directory, held through a lock file for as
+ * long as an app has the directory open. Only one process may write the
+ * snapshot and operation log at a time: a second writer would hand out ids
+ * that are already taken and lose its log records when the first compacts.
+ */
+public class DirectoryLock implements Closeable {
+    static final String LOCK_FILE = "notes.lock";
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private DirectoryLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    // Lock the directory (null for the working directory), failing at once if another app holds it
+    public static DirectoryLock acquire(File dir) throws IOException {
+        File file = new File(dir, LOCK_FILE);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another app in this JVM
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Notes in " + file.getAbsoluteFile().getParent()
+                    + " are already open in another session (" + file.getPath() + " is locked)");
+        }
+        return new DirectoryLock(channel, lock);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Cheap identity of a file's contents: file key (inode), size and
+ * modification time. Snapshots are replaced by atomic rename, so any
+ * rewrite shows up as a new file key even when size and mtime collide.
+ * Used to skip re-reading a snapshot that has not changed.
+ */
+public final class FileStamp {
+    static final FileStamp MISSING = new FileStamp(null, -1, -1);
+
+    private final Object fileKey;
+    private final long size;
+    private final long modifiedMillis;
+
+    private FileStamp(Object fileKey, long size, long modifiedMillis) {
+        this.fileKey = fileKey;
+        this.size = size;
+        this.modifiedMillis = modifiedMillis;
+    }
+
+    public static FileStamp of(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new FileStamp(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return MISSING;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof FileStamp)) return false;
+        FileStamp stamp = (FileStamp) other;
+        return size == stamp.size && modifiedMillis == stamp.modifiedMillis && Objects.equals(fileKey, stamp.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileKey, size, modifiedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "FileStamp[" + fileKey + ", " + size + " bytes, modified " + modifiedMillis + "]";
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Monotonic note id sequence.
+ * Ids are never reused, even after the highest note is deleted. The
+ * sequence is recovered once at load time by observing every id seen in
+ * the snapshot and operation log (including the sequence record written
+ * at compaction), after which allocation is O(1).
+ */
+public class IdAllocator {
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    // Allocate a single id
+    public int next() {
+        return nextId.getAndIncrement();
+    }
+
+    // Reserve a contiguous range of ids and return the first one
+    public int reserve(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Cannot reserve a negative number of ids: " + count);
+        }
+        return nextId.getAndAdd(count);
+    }
+
+    // Make sure ids at or below an already used id are never handed out
+    public void observe(int usedId) {
+        advanceTo(usedId + 1);
+    }
+
+    // Move the sequence forward to at least the given next id
+    public void advanceTo(int candidateNextId) {
+        nextId.accumulateAndGet(candidateNextId, Math::max);
+    }
+
+    // The id the next allocation will return
+    public int peek() {
+        return nextId.get();
+    }
+
+    public void reset() {
+        nextId.set(1);
+    }
+}
@@ -0,0 +1,609 @@
+import java.util.*;
+
+/**
+ * In-memory inverted index over note titles and content.
+ * Text is split into lowercase letter/digit tokens and each token maps to a
+ * sorted posting list of note ids. Queries are tokenized the same way; every
+ * query token must match (AND), and a query token matches any indexed term
+ * it is a prefix of, so "prog" finds notes containing "programming".
+ * Postings also carry each term's frequency in the note, with title
+ * occurrences weighted TITLE_BOOST times, and the index keeps every note's
+ * weighted length, so rank() can score notes with BM25. The statistics
+ * are updated on each add and remove; none of them needs a rebuild.
+ * In rank() each query token is one BM25 term: the terms it is a prefix of
+ * pool their frequencies, with longer terms credited PREFIX_WEIGHT, and
+ * MaxScore pruning skips notes that only match tokens too weak to reach
+ * the current top results.
+ */
+public class InvertedIndex {
+    // BM25 term frequency saturation and length normalization
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    // A title token counts as this many content tokens, in frequencies and note lengths alike
+    static final int TITLE_BOOST = 3;
+    // Share of a term's frequency credited to a query token it merely starts with, so "cat" prefers "cat" to "catamaran"
+    static final double PREFIX_WEIGHT = 0.5;
+
+    // Hash lookup for updates; the sorted dictionary only changes when a term appears or disappears
+    private final HashMap<String, PostingList> postings = new HashMap<>();
+    private final TreeSet<String> dictionary = new TreeSet<>();
+    private final DocumentLengths lengths = new DocumentLengths();
+    private long totalLength;
+
+    // Sorted, growable list of note ids for one term, optionally with a frequency per id
+    static class PostingList {
+        private int[] ids = new int[4];
+        // Parallel to ids; null while the list only records membership
+        private int[] frequencies;
+        private int size;
+
+        void add(int id) {
+            int pos = insertionPoint(id);
+            if (pos >= 0) {
+                insert(pos, id, 0);
+            }
+        }
+
+        // Add to the id's frequency, inserting the id if it is not in the list yet
+        void addFrequency(int id, int frequency) {
+            if (frequencies == null) {
+                frequencies = new int[ids.length];
+            }
+            // Every token of a note is added in turn, so the id is most often the last one
+            if (size > 0 && ids[size - 1] == id) {
+                frequencies[size - 1] += frequency;
+                return;
+            }
+            int pos = insertionPoint(id);
+            if (pos >= 0) {
+                insert(pos, id, frequency);
+            } else {
+                frequencies[-pos - 1] += frequency;
+            }
+        }
+
+        // Where the id would be inserted, or -(position + 1) if it is already present
+        private int insertionPoint(int id) {
+            // Ids are usually allocated in increasing order, so appending is the common case
+            if (size == 0 || ids[size - 1] < id) {
+                return size;
+            }
+            // Flips binarySearch's encoding: a hit at p becomes -(p + 1), a miss at -(p + 1) becomes p
+            return -Arrays.binarySearch(ids, 0, size, id) - 1;
+        }
+
+        private void insert(int pos, int id, int frequency) {
+            ensureCapacity();
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            if (frequencies != null) {
+                System.arraycopy(frequencies, pos, frequencies, pos + 1, size - pos);
+                frequencies[pos] = frequency;
+            }
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) return false;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            if (frequencies != null) {
+                System.arraycopy(frequencies, pos + 1, frequencies, pos, size - pos - 1);
+            }
+            size--;
+            return true;
+        }
+
+        int size() { return size; }
+
+        int get(int index) { return ids[index]; }
+
+        int frequency(int index) { return frequencies == null ? 1 : frequencies[index]; }
+
+        // Index of the first id >= the given one at or after from, or size; gallops ahead, then binary searches
+        int seek(int from, int id) {
+            if (from >= size || ids[from] >= id) {
+                return from;
+            }
+            int bound = 1;
+            while (from + bound < size && ids[from + bound] < id) {
+                bound <<= 1;
+            }
+            int pos = Arrays.binarySearch(ids, from + (bound >> 1), Math.min(from + bound, size), id);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(ids[i]);
+            }
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                if (frequencies != null) {
+                    frequencies = Arrays.copyOf(frequencies, size * 2);
+                }
+            }
+        }
+    }
+
+    // Weighted length of each indexed note, in an open-addressing primitive int table keyed by id
+    static class DocumentLengths {
+        private static final int EMPTY = -1;
+
+        private int[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        DocumentLengths() {
+            allocate(16);
+        }
+
+        int size() { return size; }
+
+        // Length of the note, or -1 if it is not indexed
+        int get(int id) {
+            int i = hash(id) & mask;
+            while (values[i] != EMPTY) {
+                if (keys[i] == id) return values[i];
+                i = (i + 1) & mask;
+            }
+            return EMPTY;
+        }
+
+        // Returns the previous length, or -1
+        int put(int id, int length) {
+            if ((size + 1) * 2 > keys.length) {
+                int[] oldKeys = keys;
+                int[] oldValues = values;
+                allocate(keys.length * 2);
+                for (int i = 0; i < oldValues.length; i++) {
+                    if (oldValues[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+                }
+            }
+            int i = hash(id) & mask;
+            while (values[i] != EMPTY) {
+                if (keys[i] == id) {
+                    int previous = values[i];
+                    values[i] = length;
+                    return previous;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = id;
+            values[i] = length;
+            size++;
+            return EMPTY;
+        }
+
+        // Returns the removed length, or -1; deletes by backward shift, as NoteTable does
+        int remove(int id) {
+            int hole = hash(id) & mask;
+            while (values[hole] != EMPTY && keys[hole] != id) {
+                hole = (hole + 1) & mask;
+            }
+            int removed = values[hole];
+            if (removed == EMPTY) return EMPTY;
+            for (int i = (hole + 1) & mask; values[i] != EMPTY; i = (i + 1) & mask) {
+                int home = hash(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            values[hole] = EMPTY;
+            size--;
+            return removed;
+        }
+
+        void clear() {
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, EMPTY);
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Index a note; a note already indexed must be removed first, or its frequencies add up
+    public void add(int id, String title, String content) {
+        List<String> titleTokens = tokenize(title);
+        List<String> contentTokens = tokenize(content);
+        for (String token : titleTokens) {
+            postingList(token).addFrequency(id, TITLE_BOOST);
+        }
+        for (String token : contentTokens) {
+            postingList(token).addFrequency(id, 1);
+        }
+        int length = titleTokens.size() * TITLE_BOOST + contentTokens.size();
+        int previous = lengths.put(id, length);
+        totalLength += length - Math.max(0, previous);
+    }
+
+    private PostingList postingList(String term) {
+        PostingList list = postings.get(term);
+        if (list == null) {
+            list = new PostingList();
+            postings.put(term, list);
+            dictionary.add(term);
+        }
+        return list;
+    }
+
+    public void remove(int id, String title, String content) {
+        for (String term : terms(title, content)) {
+            PostingList list = postings.get(term);
+            if (list != null && list.remove(id) && list.size() == 0) {
+                postings.remove(term);
+                dictionary.remove(term);
+            }
+        }
+        int removed = lengths.remove(id);
+        if (removed > 0) {
+            totalLength -= removed;
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        dictionary.clear();
+        lengths.clear();
+        totalLength = 0;
+    }
+
+    // Number of distinct indexed terms
+    public int termCount() {
+        return postings.size();
+    }
+
+    // Ids of notes matching every token of the query, in ascending order; null if the query has no tokens
+    public int[] search(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return null;
+        }
+
+        BitSet result = null;
+        for (String token : queryTokens) {
+            BitSet hits = new BitSet();
+            for (String term : dictionary.subSet(token, true, token + Character.MAX_VALUE, false)) {
+                postings.get(term).addTo(hits);
+            }
+            if (result == null) {
+                result = hits;
+            } else {
+                result.and(hits);
+            }
+            if (result.isEmpty()) {
+                return new int[0];
+            }
+        }
+        return result.stream().toArray();
+    }
+
+    // Ids of the limit notes that best match any token of the query by BM25 score, best first
+    // (ties by ascending id); null if the query has no tokens.
+    // Tokens are visited a note at a time from the one with the lowest score bound up (MaxScore): once the best
+    // limit scores are in the heap, a note matching only tokens whose bounds add up to less than the weakest kept
+    // score is never scored, and the weak tokens' postings are only searched for notes the strong tokens turn up.
+    public int[] rank(String query, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return null;
+        }
+        int notes = lengths.size();
+        double averageLength = notes == 0 ? 1 : Math.max(1.0, (double) totalLength / notes);
+
+        List<Cursor> cursors = new ArrayList<>(queryTokens.size());
+        for (String token : new LinkedHashSet<>(queryTokens)) {
+            Cursor cursor = new Cursor();
+            long df = 0;
+            for (String term : dictionary.subSet(token, true, token + Character.MAX_VALUE, false)) {
+                PostingList list = postings.get(term);
+                cursor.add(list, term.length() == token.length() ? 1 : PREFIX_WEIGHT);
+                df += list.size();
+            }
+            if (cursor.id() == Integer.MAX_VALUE) continue;
+            // Summed over the token's terms, which can only overstate how many notes contain one of them
+            df = Math.min(df, notes);
+            cursor.idf = Math.log(1 + (notes - df + 0.5) / (df + 0.5));
+            cursors.add(cursor);
+        }
+        cursors.sort(Comparator.comparingDouble(cursor -> cursor.idf));
+        return topScores(cursors.toArray(new Cursor[0]), limit, averageLength).idsBestFirst();
+    }
+
+    // MaxScore merge of the cursors, sorted by ascending idf, into the best limit scores
+    private TopScores topScores(Cursor[] cursors, int limit, double averageLength) {
+        // A token's BM25 contribution tends to idf * (K1 + 1) as its frequency grows
+        double[] boundUpTo = new double[cursors.length + 1];
+        for (int i = 0; i < cursors.length; i++) {
+            boundUpTo[i + 1] = boundUpTo[i] + cursors[i].idf * (K1 + 1);
+        }
+
+        TopScores top = new TopScores(limit);
+        // Cursors below this index cannot lift a note into the heap on their own
+        int essential = 0;
+        double threshold = top.threshold();
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            for (int i = essential; i < cursors.length; i++) {
+                id = Math.min(id, cursors[i].id());
+            }
+            if (id == Integer.MAX_VALUE) break;
+
+            double norm = K1 * (1 - B + B * Math.max(0, lengths.get(id)) / averageLength);
+            double score = 0;
+            for (int i = essential; i < cursors.length; i++) {
+                if (cursors[i].id() == id) {
+                    score += cursors[i].scoreAndAdvance(norm);
+                }
+            }
+            for (int i = essential - 1; i >= 0 && score + boundUpTo[i + 1] >= threshold; i--) {
+                cursors[i].advanceTo(id);
+                if (cursors[i].id() == id) {
+                    score += cursors[i].scoreAndAdvance(norm);
+                }
+            }
+            if (score >= threshold) {
+                top.offer(id, score);
+                threshold = top.threshold();
+                while (essential < cursors.length && boundUpTo[essential + 1] < threshold) {
+                    essential++;
+                }
+            }
+        }
+        return top;
+    }
+
+    // One query token's position in rank(): the posting lists of the terms it is a prefix of, merged by id
+    // in a binary min-heap on each list's current id
+    private static final class Cursor {
+        private TermCursor[] terms = new TermCursor[1];
+        private int size;
+        double idf;
+
+        void add(PostingList list, double weight) {
+            if (list.size() == 0) return;
+            if (size == terms.length) {
+                terms = Arrays.copyOf(terms, size * 2);
+            }
+            terms[size] = new TermCursor(list, weight);
+            siftUp(size++);
+        }
+
+        // Current note id, or Integer.MAX_VALUE once every list is exhausted
+        int id() {
+            return size == 0 ? Integer.MAX_VALUE : terms[0].id;
+        }
+
+        // BM25 contribution of the token to the current note, moving past the note
+        double scoreAndAdvance(double norm) {
+            int id = terms[0].id;
+            double tf = 0;
+            while (size > 0 && terms[0].id == id) {
+                TermCursor term = terms[0];
+                tf += term.weight * term.list.frequency(term.index);
+                term.moveTo(term.index + 1);
+                reheapRoot();
+            }
+            return idf * tf * (K1 + 1) / (tf + norm);
+        }
+
+        // Skip notes below the given id
+        void advanceTo(int id) {
+            while (size > 0 && terms[0].id < id) {
+                TermCursor term = terms[0];
+                term.moveTo(term.list.seek(term.index, id));
+                reheapRoot();
+            }
+        }
+
+        // Restore the heap after the root moved forward, dropping it if its list is exhausted
+        private void reheapRoot() {
+            if (terms[0].id == Integer.MAX_VALUE) {
+                terms[0] = terms[--size];
+                terms[size] = null;
+            }
+            int i = 0;
+            while (true) {
+                int least = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (terms[child].id < terms[least].id) least = child;
+                }
+                if (least == i) return;
+                swap(i, least);
+                i = least;
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && terms[i].id < terms[(i - 1) / 2].id) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void swap(int a, int b) {
+            TermCursor term = terms[a];
+            terms[a] = terms[b];
+            terms[b] = term;
+        }
+    }
+
+    // Position in one term's posting list; id caches the id there, Integer.MAX_VALUE past the end
+    private static final class TermCursor {
+        final PostingList list;
+        final double weight;
+        int index;
+        int id;
+
+        TermCursor(PostingList list, double weight) {
+            this.list = list;
+            this.weight = weight;
+            moveTo(0);
+        }
+
+        void moveTo(int index) {
+            this.index = index;
+            this.id = index < list.size() ? list.get(index) : Integer.MAX_VALUE;
+        }
+    }
+
+    // Bounded min-heap of the best (score, id) pairs seen, in parallel primitive arrays;
+    // the root is the weakest kept entry, so each offer is O(log limit) whatever the number of matches
+    static final class TopScores {
+        private final int limit;
+        private double[] scores;
+        private int[] ids;
+        private int size;
+
+        TopScores(int limit) {
+            this.limit = limit;
+            int capacity = Math.max(1, Math.min(limit, 64));
+            this.scores = new double[capacity];
+            this.ids = new int[capacity];
+        }
+
+        void offer(int id, double score) {
+            if (limit <= 0) return;
+            if (size < limit) {
+                if (size == ids.length) {
+                    int capacity = (int) Math.min(limit, size * 2L);
+                    scores = Arrays.copyOf(scores, capacity);
+                    ids = Arrays.copyOf(ids, capacity);
+                }
+                scores[size] = score;
+                ids[size] = id;
+                siftUp(size++);
+            } else if (weaker(scores[0], ids[0], score, id)) {
+                scores[0] = score;
+                ids[0] = id;
+                siftDown(0, size);
+            }
+        }
+
+        // Score an entry must reach to be kept: the weakest kept score once the heap is full
+        double threshold() {
+            if (limit <= 0) return Double.POSITIVE_INFINITY;
+            return size < limit ? Double.NEGATIVE_INFINITY : scores[0];
+        }
+
+        // Empties the heap, returning the kept ids from best to weakest
+        int[] idsBestFirst() {
+            int[] best = new int[size];
+            for (int n = size; n > 0; n--) {
+                best[n - 1] = ids[0];
+                ids[0] = ids[n - 1];
+                scores[0] = scores[n - 1];
+                siftDown(0, n - 1);
+            }
+            size = 0;
+            return best;
+        }
+
+        // Whether (score, id) ranks below (otherScore, otherId): lower score, or the same score and a higher id
+        private static boolean weaker(double score, int id, double otherScore, int otherId) {
+            return score < otherScore || score == otherScore && id > otherId;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!weaker(scores[i], ids[i], scores[parent], ids[parent])) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int n) {
+            while (true) {
+                int weakest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < n; child++) {
+                    if (weaker(scores[child], ids[child], scores[weakest], ids[weakest])) weakest = child;
+                }
+                if (weakest == i) return;
+                swap(i, weakest);
+                i = weakest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+        }
+    }
+
+    // Whether every query token is a prefix of some term of the note, i.e. search() would return it
+    static boolean matches(List<String> queryTokens, String title, String content) {
+        for (String token : queryTokens) {
+            if (!hasTermStartingWith(title, token) && !hasTermStartingWith(content, token)) return false;
+        }
+        return true;
+    }
+
+    // Whether a token of the text, as tokenize() would split it, starts with the lowercase token; allocates nothing
+    private static boolean hasTermStartingWith(String text, String token) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int matched = 0;
+            while (matched < token.length() && i + matched < length) {
+                char c = text.charAt(i + matched);
+                if (!Character.isLetterOrDigit(c) || Character.toLowerCase(c) != token.charAt(matched)) break;
+                matched++;
+            }
+            if (matched == token.length()) return true;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) i++;
+        }
+        return false;
+    }
+
+    // Distinct terms of a note
+    private static Set<String> terms(String title, String content) {
+        Set<String> terms = new HashSet<>(tokenize(title));
+        terms.addAll(tokenize(content));
+        return terms;
+    }
+
+    // Split text into lowercase runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only memory mapping of a whole file, shared by the binary and
+ * compressed snapshot formats. The file is mapped in SEGMENT_SIZE pieces
+ * addressed by long offsets, so it may exceed 2 GB; values that straddle
+ * two segments are assembled byte by byte.
+ */
+public final class MappedFile {
+    private static final int SEGMENT_BITS = 30;
+    static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private MappedFile(MappedByteBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    // Map the whole file; the mapping stays valid after the channel is closed
+    public static MappedFile map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+        }
+        return new MappedFile(segments, size);
+    }
+
+    public long size() { return size; }
+
+    public int getInt(long pos) {
+        int within = (int) (pos & (SEGMENT_SIZE - 1));
+        if (within <= SEGMENT_SIZE - 4) {
+            return segments[(int) (pos >>> SEGMENT_BITS)].getInt(within);
+        }
+        return (int) getSplit(pos, 4);
+    }
+
+    public long getLong(long pos) {
+        int within = (int) (pos & (SEGMENT_SIZE - 1));
+        if (within <= SEGMENT_SIZE - 8) {
+            return segments[(int) (pos >>> SEGMENT_BITS)].getLong(within);
+        }
+        return getSplit(pos, 8);
+    }
+
+    // Big-endian value of the given width that starts near the end of one segment and ends in the next
+    private long getSplit(long pos, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            long at = pos + i;
+            value = value << 8 | segments[(int) (at >>> SEGMENT_BITS)].get((int) (at & (SEGMENT_SIZE - 1))) & 0xFF;
+        }
+        return value;
+    }
+
+    // The given range as a buffer: a view of the mapping when it lies in one segment, otherwise a copy
+    public ByteBuffer slice(long pos, int length) {
+        int within = (int) (pos & (SEGMENT_SIZE - 1));
+        MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_BITS)];
+        if (within + length <= segment.limit()) {
+            return segment.slice(within, length);
+        }
+        byte[] bytes = new byte[length];
+        read(pos, bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    public String readString(long pos, int length) {
+        byte[] bytes = new byte[length];
+        read(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void read(long pos, byte[] bytes) {
+        int copied = 0;
+        while (copied < bytes.length) {
+            long at = pos + copied;
+            int within = (int) (at & (SEGMENT_SIZE - 1));
+            MappedByteBuffer segment = segments[(int) (at >>> SEGMENT_BITS)];
+            int chunk = Math.min(bytes.length - copied, segment.limit() - within);
+            segment.get(within, bytes, copied, chunk);
+            copied += chunk;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Buffered, paginated rendering of notes.
+ * Notes are formatted into a single reusable StringBuilder with a cached
+ * date formatter and written to a buffered stream that is flushed once per
+ * page. Pages come from a cursor, so showing the first page of a large
+ * store only touches the notes on that page.
+ */
+public class NotePager {
+    static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String SEPARATOR = "-".repeat(50);
+
+    // Walks a sequence of notes a page at a time
+    interface Cursor {
+        List<NotesApp.Note> first(int count);
+        List<NotesApp.Note> next(int count);
+        List<NotesApp.Note> previous(int count);
+    }
+
+    private final PrintStream out;
+    private final StringBuilder text = new StringBuilder(1024);
+
+    public NotePager(OutputStream out) {
+        this.out = new PrintStream(new BufferedOutputStream(out, 1 << 16), false);
+    }
+
+    // Render one page and flush it
+    public void render(List<NotesApp.Note> page) {
+        for (NotesApp.Note note : page) {
+            text.setLength(0);
+            format(note, text);
+            text.append('\n').append(SEPARATOR).append('\n');
+            out.append(text);
+        }
+        out.flush();
+    }
+
+    // Same text as Note.toString()
+    static void format(NotesApp.Note note, StringBuilder text) {
+        text.append("ID: ").append(note.getId())
+                .append(" | Title: ").append(note.getTitle())
+                .append(" | Created: ");
+        DISPLAY_FORMAT.formatTo(note.getTimestamp(), text);
+        text.append("\nContent: ").append(note.getContent()).append('\n');
+    }
+
+    // Cursor over the store in insertion order, anchored on note ids so concurrent deletes do not disturb it
+    static Cursor forStore(NotesStore store) {
+        return new Cursor() {
+            private int firstId;
+            private int lastId;
+
+            @Override
+            public List<NotesApp.Note> first(int count) {
+                return remember(store.firstPage(count));
+            }
+
+            @Override
+            public List<NotesApp.Note> next(int count) {
+                List<NotesApp.Note> page = store.pageAfter(lastId, count);
+                return page == null ? first(count) : remember(page);
+            }
+
+            @Override
+            public List<NotesApp.Note> previous(int count) {
+                List<NotesApp.Note> page = store.pageBefore(firstId, count);
+                return page == null ? first(count) : remember(page);
+            }
+
+            private List<NotesApp.Note> remember(List<NotesApp.Note> page) {
+                if (!page.isEmpty()) {
+                    firstId = page.get(0).getId();
+                    lastId = page.get(page.size() - 1).getId();
+                }
+                return page;
+            }
+        };
+    }
+
+    // Cursor over an already materialized list such as search results
+    static Cursor forList(List<NotesApp.Note> notes) {
+        return new Cursor() {
+            private int start;
+            private int end;
+
+            @Override
+            public List<NotesApp.Note> first(int count) {
+                return slice(0, count);
+            }
+
+            @Override
+            public List<NotesApp.Note> next(int count) {
+                return end >= notes.size() ? Collections.emptyList() : slice(end, count);
+            }
+
+            @Override
+            public List<NotesApp.Note> previous(int count) {
+                return start == 0 ? Collections.emptyList() : slice(Math.max(0, start - count), count);
+            }
+
+            private List<NotesApp.Note> slice(int from, int count) {
+                start = from;
+                end = Math.min(notes.size(), from + count);
+                return notes.subList(start, end);
+            }
+        };
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.*;
+
+/**
+ * Id-keyed note storage with an insertion-ordered view.
+ * Ids are kept in an open-addressing primitive int hash table (no Integer
+ * boxing) that points into an insertion-ordered array of notes, giving
+ * O(1) lookup and delete by id while iteration still follows the order in
+ * which notes were added. Deletes leave a gap in the ordered array that is
+ * squeezed out once gaps outnumber live notes.
+ * The ordered storage sits behind a few protected methods so that
+ * ColumnarNoteTable can keep the same notes as primitive columns instead.
+ */
+public class NoteTable implements Iterable<NotesApp.Note> {
+    private static final int EMPTY = -1;
+    protected static final int MIN_CAPACITY = 16;
+
+    // Hash table: keys[i] is a note id, slots[i] its position in order (EMPTY if unused)
+    private int[] keys;
+    private int[] slots;
+    private int mask;
+
+    // Insertion-ordered notes; null entries are deleted notes not yet compacted away
+    private NotesApp.Note[] order;
+    private int orderSize;
+    private int size;
+
+    public NoteTable() {
+        this(MIN_CAPACITY);
+    }
+
+    public NoteTable(int expectedSize) {
+        this(expectedSize, true);
+    }
+
+    // For subclasses that keep their own ordered storage of at least MIN_CAPACITY positions
+    protected NoteTable(int expectedSize, boolean objectStorage) {
+        allocateTable(tableCapacityFor(expectedSize));
+        order = objectStorage ? new NotesApp.Note[Math.max(MIN_CAPACITY, expectedSize)] : null;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public NotesApp.Note get(int id) {
+        int slot = find(id);
+        return slot < 0 ? null : noteAt(slots[slot]);
+    }
+
+    public boolean contains(int id) {
+        return find(id) >= 0;
+    }
+
+    // Position of a note in insertion order (stable until the next remove), or -1
+    public int positionOf(int id) {
+        int slot = find(id);
+        return slot < 0 ? -1 : slots[slot];
+    }
+
+    // Up to count notes at or after the given position, in insertion order
+    public List<NotesApp.Note> pageForward(int fromPosition, int count) {
+        List<NotesApp.Note> page = new ArrayList<>(Math.min(count, size));
+        for (int pos = Math.max(0, fromPosition); pos < orderSize && page.size() < count; pos++) {
+            if (isLive(pos)) page.add(noteAt(pos));
+        }
+        return page;
+    }
+
+    // Up to count notes before the given position, in insertion order
+    public List<NotesApp.Note> pageBackward(int beforePosition, int count) {
+        ArrayDeque<NotesApp.Note> page = new ArrayDeque<>(Math.min(count, size));
+        for (int pos = Math.min(beforePosition, orderSize) - 1; pos >= 0 && page.size() < count; pos--) {
+            if (isLive(pos)) page.addFirst(noteAt(pos));
+        }
+        return new ArrayList<>(page);
+    }
+
+    // Insert a note, replacing (in place) any note with the same id; returns the replaced note
+    public NotesApp.Note put(NotesApp.Note note) {
+        int slot = find(note.getId());
+        if (slot >= 0) {
+            int pos = slots[slot];
+            NotesApp.Note previous = noteAt(pos);
+            setNote(pos, note);
+            return previous;
+        }
+
+        if (orderSize == capacity()) {
+            if (orderSize - size > size) {
+                compactOrder();
+            } else {
+                resize(capacity() * 2);
+            }
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        setNote(orderSize, note);
+        insertSlot(note.getId(), orderSize);
+        orderSize++;
+        size++;
+        return null;
+    }
+
+    // Remove a note by id; returns the removed note or null
+    public NotesApp.Note remove(int id) {
+        int slot = find(id);
+        if (slot < 0) return null;
+
+        int pos = slots[slot];
+        NotesApp.Note removed = noteAt(pos);
+        clearNote(pos);
+        deleteSlot(slot);
+        size--;
+        if (pos == orderSize - 1) {
+            orderSize--;
+        } else if (orderSize - size > size && orderSize > MIN_CAPACITY) {
+            compactOrder();
+        }
+        return removed;
+    }
+
+    // Release spare capacity, e.g. once a bulk load is complete
+    public void trimToSize() {
+        if (orderSize > size) {
+            compactOrder();
+        }
+        resize(Math.max(MIN_CAPACITY, orderSize));
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        clearRange(0, orderSize);
+        orderSize = 0;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<NotesApp.Note> iterator() {
+        return new Iterator<NotesApp.Note>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < orderSize && !isLive(from)) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() { return next < orderSize; }
+
+            @Override
+            public NotesApp.Note next() {
+                if (next >= orderSize) throw new NoSuchElementException();
+                NotesApp.Note note = noteAt(next);
+                next = advance(next + 1);
+                return note;
+            }
+        };
+    }
+
+    // Slot index holding the id, or -1
+    private int find(int id) {
+        int i = hash(id) & mask;
+        while (slots[i] != EMPTY) {
+            if (keys[i] == id) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int id, int pos) {
+        int i = hash(id) & mask;
+        while (slots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        slots[i] = pos;
+    }
+
+    // Linear-probing delete with backward shift, so no tombstones are needed in the hash table
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (slots[i] != EMPTY) {
+            int home = hash(keys[i]) & mask;
+            // Move the entry into the hole if its home is not cyclically within (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                slots[hole] = slots[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[hole] = EMPTY;
+    }
+
+    // Squeeze deleted gaps out of the ordered array and repoint the hash table
+    private void compactOrder() {
+        int write = 0;
+        for (int read = 0; read < orderSize; read++) {
+            if (isLive(read)) {
+                if (read != write) {
+                    moveNote(read, write);
+                }
+                slots[find(idAt(write))] = write;
+                write++;
+            }
+        }
+        clearRange(write, orderSize);
+        orderSize = write;
+    }
+
+    // Ordered storage: one note per position, null once deleted
+
+    protected NotesApp.Note noteAt(int pos) { return order[pos]; }
+
+    protected boolean isLive(int pos) { return order[pos] != null; }
+
+    protected int idAt(int pos) { return order[pos].getId(); }
+
+    protected void setNote(int pos, NotesApp.Note note) { order[pos] = note; }
+
+    protected void clearNote(int pos) { order[pos] = null; }
+
+    // Move a live note to an earlier, free position; its old position is left unused
+    protected void moveNote(int from, int to) { order[to] = order[from]; }
+
+    // Drop every note in [from, to)
+    protected void clearRange(int from, int to) { Arrays.fill(order, from, to, null); }
+
+    protected int capacity() { return order.length; }
+
+    // Change the number of positions; never below the positions in use
+    protected void resize(int capacity) { order = Arrays.copyOf(order, capacity); }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        allocateTable(capacity);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != EMPTY) {
+                insertSlot(oldKeys[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new int[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int tableCapacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,7 +1,12 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneOffset;
 
 /**
  * A simple Notes Application with File I/O functionality
@@ -11,72 +16,349 @@ import java.time.format.DateTimeFormatter;
  * - Save notes to file
  * - Load notes from file
  * - Delete notes
- * - Search notes
+ * - Search notes (a trailing '*' searches title prefixes, with title suggestions)
+ * - Ranked search: the best matches by BM25 with boosted titles
+ * - Append-only operation log with periodic snapshot compaction
+ * - Inverted index for keyword search
+ * - Monotonic id allocation with bulk range reservation
+ * - Hash-indexed note storage with O(1) lookup and delete by id
+ * - Optional memory-mapped binary snapshot format (-Dnotes.format=binary)
+ * - Optional block-compressed snapshot format (-Dnotes.format=deflate)
+ * - Optional text snapshot sharded across files, saving only changed shards (-Dnotes.shards=N)
+ * - Optional lazy content loading through a bounded cache (-Dnotes.lazyContent=true)
+ * - Optional columnar in-memory layout with a UTF-8 text arena (-Dnotes.columnar=true)
+ * - Optional off-heap note text, so the heap holds only columns and indexes (-Dnotes.offHeap=true)
+ * - Parallel parsing of large text snapshots
+ * - Crash-safe snapshot writes (temp file, fsync, atomic rename)
+ * - Background autosave that coalesces changes (-Dnotes.autosaveMillis, -Dnotes.autosaveChanges)
+ * - Headless batch commands: java NotesApp import|search|export|delete ...
+ * - Paginated, buffered note listings (-Dnotes.pageSize)
+ * - Thread-safe NotesStore shared by every client
+ * - Embedded HTTP API: java NotesApp serve [port]
+ * - Reload applies only log records appended since the last load when the snapshot is unchanged
+ * - Per-operation latency histograms and I/O counters (menu, JSON, JMX; -Dnotes.metricsFile)
+ * - Time index for notes between two dates and the latest N notes
+ * - Per-block Bloom filters in notes.dfz let batch searches skip blocks that cannot match
  */
 public class NotesApp {
     private static final String NOTES_FILE = "notes.txt";
-    private List<Note> notes;
+    private static final String BINARY_NOTES_FILE = "notes.bin";
+    private static final String COMPRESSED_NOTES_FILE = "notes.dfz";
+    private static final String LOG_FILE = "notes.log";
+    private static final boolean BINARY_FORMAT = "binary".equals(System.getProperty("notes.format", "text"));
+    private static final boolean COMPRESSED_FORMAT = "deflate".equals(System.getProperty("notes.format", "text"));
+    // Number of notes-<i>.txt shard files for the text format; 1 keeps the single notes.txt
+    private static final int SHARDS = Integer.getInteger("notes.shards", 1);
+    // Format new snapshots are written in; an existing snapshot is read in whatever format it has
+    private static final SnapshotFormat CONFIGURED_FORMAT = BINARY_FORMAT ? SnapshotFormat.BINARY
+            : COMPRESSED_FORMAT ? SnapshotFormat.COMPRESSED
+            : SHARDS > 1 ? SnapshotFormat.SHARDED : SnapshotFormat.TEXT;
+    // Keep note text in direct buffers outside the Java heap; implies the columnar layout
+    private static final boolean OFF_HEAP = Boolean.getBoolean("notes.offHeap");
+    // Keep notes in memory as primitive columns and a text arena rather than Note objects
+    private static final boolean COLUMNAR = Boolean.getBoolean("notes.columnar") || OFF_HEAP;
+    // Lazy content needs record offsets, so it only applies to notes read from notes.bin,
+    // and not to the columnar layout, which keeps all content in memory anyway
+    private static final boolean LAZY_CONTENT = Boolean.getBoolean("notes.lazyContent") && !COLUMNAR;
+    private static final long CONTENT_CACHE_CHARS = Long.getLong("notes.contentCacheChars", 16L * 1024 * 1024);
+    // Text snapshots at least this large are parsed in parallel
+    private static final long PARALLEL_LOAD_BYTES = 8L << 20;
+    // Flush dirty notes to the log at least this often, or once this many are pending
+    private static final long AUTOSAVE_MILLIS = Long.getLong("notes.autosaveMillis", 1000);
+    private static final int AUTOSAVE_CHANGES = Integer.getInteger("notes.autosaveChanges", 1000);
+    // Notes shown per page when listing
+    private static final int PAGE_SIZE = Integer.getInteger("notes.pageSize", 20);
+    private static final int TITLE_SUGGESTIONS = 10;
+    // Best matches shown by a ranked search
+    static final int RANKED_RESULTS = Integer.getInteger("notes.rankedResults", 10);
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    // When set, a JSON dump of the metrics is written here on exit
+    private static final String METRICS_FILE = System.getProperty("notes.metricsFile");
+    // Compact the log into a snapshot once it holds at least this many records, and half as many as there are notes
+    private static final int MIN_COMPACTION_RECORDS = Integer.getInteger("notes.compactionRecords", 1000);
+    private final File notesFile;
+    private final File binaryNotesFile;
+    private final File compressedNotesFile;
+    private final File logFile;
+    private final NotesMetrics metrics;
+    private final NotesStore store;
     private Scanner scanner;
+    private OperationLog operationLog;
+    private AutoSaver autoSaver;
+    private ContentCache contentCache;
+    private final File dataDir;
+    // Held from construction until closePersistence(), so no other app writes the same files
+    private DirectoryLock directoryLock;
+    // Set when the text snapshot is sharded
+    private final ShardedNotesFiles shardFiles;
+    // Shards to rewrite in the snapshot being written; only touched by the autosave thread
+    private BitSet capturedShards;
+    // Snapshot the store currently reflects, whether loaded or written by this app; null before the first load
+    private volatile List<FileStamp> snapshotStamps;
+    private final NotesFileWriter snapshotWriter = new NotesFileWriter();
 
-    public NotesApp() {
-        this.notes = new ArrayList<>();
+    public NotesApp() throws IOException {
+        this(null);
+    }
+
+    // Keep the notes files in the given directory (null for the working directory); fails if another app has it open
+    NotesApp(File dataDir) throws IOException {
+        this.dataDir = dataDir;
+        this.directoryLock = DirectoryLock.acquire(dataDir);
+        this.notesFile = new File(dataDir, NOTES_FILE);
+        this.binaryNotesFile = new File(dataDir, BINARY_NOTES_FILE);
+        this.compressedNotesFile = new File(dataDir, COMPRESSED_NOTES_FILE);
+        this.logFile = new File(dataDir, LOG_FILE);
+        this.shardFiles = CONFIGURED_FORMAT == SnapshotFormat.SHARDED
+                ? new ShardedNotesFiles(notesFile.getAbsoluteFile().getParentFile(), SHARDS) : null;
+        this.metrics = new NotesMetrics();
+        metrics.register();
+        this.store = new NotesStore(metrics);
         this.scanner = new Scanner(System.in);
+        this.operationLog = new OperationLog(logFile.getPath());
+        this.autoSaver = new AutoSaver(operationLog, new AutoSaver.Store() {
+            @Override
+            public List<Note> captureNotes(Runnable atCapture) {
+                return store.snapshot(() -> {
+                    atCapture.run();
+                    if (shardFiles != null) {
+                        capturedShards = shardFiles.takeDirty();
+                    }
+                });
+            }
+
+            @Override
+            public int nextId() { return store.nextId(); }
+
+            @Override
+            public void writeSnapshot(List<Note> snapshot) throws IOException { NotesApp.this.writeSnapshot(snapshot); }
+
+            @Override
+            public int compactionThreshold() { return NotesApp.this.compactionThreshold(); }
+        }, metrics, AUTOSAVE_MILLIS, AUTOSAVE_CHANGES);
+        store.setChangeListener(new NotesStore.ChangeListener() {
+            @Override
+            public void noteChanged(Note note) {
+                autoSaver.recordPut(note);
+                markShardDirty(note.getId());
+            }
+
+            @Override
+            public void noteDeleted(int id) {
+                autoSaver.recordDelete(id);
+                markShardDirty(id);
+            }
+        });
         loadNotesFromFile();
     }
 
-    // Inner class to represent a Note
+    // Snapshot layouts; -Dnotes.format and -Dnotes.shards choose the one written
+    enum SnapshotFormat { TEXT, SHARDED, BINARY, COMPRESSED }
+
+    // Inner class to represent a Note; immutable, so a changed note is a new Note put in the store
     static class Note {
-        private int id;
-        private String title;
-        private String content;
-        private LocalDateTime timestamp;
+        private final int id;
+        private final String title;
+        private final String content;
+        // Local date-time as epoch millis (UTC-based), so a note holds no date-time objects
+        private final long timestamp;
+        // Set for lazily loaded notes whose content is fetched on demand
+        private final ContentCache.Loader contentSource;
+        private final long contentRef;
 
         public Note(int id, String title, String content) {
+            this(id, title, content, toEpochMillis(LocalDateTime.now()));
+        }
+
+        public Note(int id, String title, String content, long timestamp) {
             this.id = id;
             this.title = title;
             this.content = content;
-            this.timestamp = LocalDateTime.now();
+            this.timestamp = timestamp;
+            this.contentSource = null;
+            this.contentRef = 0;
         }
 
-        public Note(int id, String title, String content, LocalDateTime timestamp) {
+        // Lazily loaded note: content is read from the source (e.g. a ContentCache) whenever it is needed
+        public Note(int id, String title, long timestamp, ContentCache.Loader contentSource, long contentRef) {
             this.id = id;
             this.title = title;
-            this.content = content;
+            this.content = null;
             this.timestamp = timestamp;
+            this.contentSource = contentSource;
+            this.contentRef = contentRef;
         }
 
-        // Getters and setters
+        // Getters
         public int getId() { return id; }
         public String getTitle() { return title; }
-        public String getContent() { return content; }
-        public LocalDateTime getTimestamp() { return timestamp; }
-
-        public void setTitle(String title) { this.title = title; }
-        public void setContent(String content) { this.content = content; }
+        public String getContent() { return content != null ? content : contentSource.load(contentRef); }
+        // Content for a read that visits every note once, bypassing the content cache of a lazy note
+        public String getContentOnce() { return content != null ? content : contentSource.loadOnce(contentRef); }
+        public LocalDateTime getTimestamp() { return fromEpochMillis(timestamp); }
+        public long getTimestampMillis() { return timestamp; }
+        public boolean isContentLoaded() { return content != null; }
 
         @Override
         public String toString() {
-            return String.format("ID: %d | Title: %s | Created: %s\nContent: %s\n",
-                    id, title, timestamp.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")), content);
+            StringBuilder text = new StringBuilder();
+            NotePager.format(this, text);
+            return text.toString();
         }
 
-        // Method to convert note to file format
+        // Method to convert note to file format; a lazy note's content is read without caching it,
+        // as exports and snapshots visit every note once
         public String toFileFormat() {
-            return id + "|" + title + "|" + content + "|" + timestamp.toString();
+            return toFileFormat(getContentOnce());
+        }
+
+        // Line for this note with its content already read
+        String toFileFormat(String content) {
+            StringBuilder line = new StringBuilder(title.length() + content.length() + 40);
+            line.append(id).append('|').append(title).append('|').append(content).append('|');
+            appendTimestamp(line, timestamp);
+            return line.toString();
         }
 
         // Static method to create note from file format
         public static Note fromFileFormat(String line) {
-            String[] parts = line.split("\\|", 4);
-            if (parts.length == 4) {
-                return new Note(
-                        Integer.parseInt(parts[0]),
-                        parts[1],
-                        parts[2],
-                        LocalDateTime.parse(parts[3])
-                );
+            return fromFileFormat(line, 0, line.length());
+        }
+
+        // Parse id|title|content|timestamp from line[start, end) in one pass; only title and content are copied
+        public static Note fromFileFormat(CharSequence line, int start, int end) {
+            int first = indexOf(line, '|', start, end);
+            int second = first < 0 ? -1 : indexOf(line, '|', first + 1, end);
+            int third = second < 0 ? -1 : indexOf(line, '|', second + 1, end);
+            if (third < 0) {
+                return null;
             }
-            return null;
+            return new Note(
+                    Integer.parseInt(line, start, first, 10),
+                    line.subSequence(first + 1, second).toString(),
+                    line.subSequence(second + 1, third).toString(),
+                    parseTimestamp(line, third + 1, end)
+            );
+        }
+
+        private static int indexOf(CharSequence text, char c, int from, int end) {
+            for (int i = from; i < end; i++) {
+                if (text.charAt(i) == c) return i;
+            }
+            return -1;
+        }
+
+        // Fast path for LocalDateTime.toString() output: yyyy-MM-ddTHH:mm[:ss[.fraction]], as epoch millis
+        static long parseTimestamp(CharSequence text, int start, int end) {
+            int length = end - start;
+            if (length >= 16 && text.charAt(start + 4) == '-' && text.charAt(start + 7) == '-'
+                    && text.charAt(start + 10) == 'T' && text.charAt(start + 13) == ':') {
+                int year = digits(text, start, 4);
+                int month = digits(text, start + 5, 2);
+                int day = digits(text, start + 8, 2);
+                int hour = digits(text, start + 11, 2);
+                int minute = digits(text, start + 14, 2);
+                int second = 0;
+                int nanos = 0;
+                int pos = start + 16;
+                boolean valid = year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0;
+                if (valid && pos < end) {
+                    valid = end - pos >= 3 && text.charAt(pos) == ':' && (second = digits(text, pos + 1, 2)) >= 0;
+                    pos += 3;
+                    if (valid && pos < end) {
+                        int fractionDigits = end - pos - 1;
+                        valid = text.charAt(pos) == '.' && fractionDigits >= 1 && fractionDigits <= 9
+                                && (nanos = digits(text, pos + 1, fractionDigits)) >= 0;
+                        for (int i = fractionDigits; valid && i < 9; i++) {
+                            nanos *= 10;
+                        }
+                    }
+                }
+                if (valid && month >= 1 && month <= 12 && day >= 1 && day <= Month.of(month).length(Year.isLeap(year))
+                        && hour < 24 && minute < 60 && second < 60) {
+                    return epochDay(year, month, day) * 86_400_000L
+                            + ((hour * 60 + minute) * 60 + second) * 1000L + nanos / 1_000_000;
+                }
+            }
+            // Anything else (e.g. signed or 5+ digit years) goes through the general ISO parser
+            return toEpochMillis(LocalDateTime.parse(text.subSequence(start, end)));
+        }
+
+        // Timestamps are held as UTC epoch millis of the local date-time; finer precision is dropped
+        static long toEpochMillis(LocalDateTime timestamp) {
+            return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+
+        static LocalDateTime fromEpochMillis(long millis) {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                    (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+        }
+
+        // Same text as LocalDateTime.toString() of the timestamp, without building the LocalDateTime
+        static void appendTimestamp(StringBuilder text, long millis) {
+            long day = Math.floorDiv(millis, 86_400_000L);
+            int date = civilDate(day);
+            int year = date / 10_000;
+            if (year < 0 || year > 9999) {
+                text.append(fromEpochMillis(millis));
+                return;
+            }
+            int milliOfDay = (int) (millis - day * 86_400_000L);
+            int second = milliOfDay / 1000 % 60;
+            int milli = milliOfDay % 1000;
+            appendDigits(text, year, 4).append('-');
+            appendDigits(text, date / 100 % 100, 2).append('-');
+            appendDigits(text, date % 100, 2).append('T');
+            appendDigits(text, milliOfDay / 3_600_000, 2).append(':');
+            appendDigits(text, milliOfDay / 60_000 % 60, 2);
+            if (second > 0 || milli > 0) {
+                appendDigits(text.append(':'), second, 2);
+                if (milli > 0) {
+                    appendDigits(text.append('.'), milli, 3);
+                }
+            }
+        }
+
+        private static StringBuilder appendDigits(StringBuilder text, int value, int width) {
+            for (int divisor = width == 4 ? 1000 : width == 3 ? 100 : 10; divisor > 0; divisor /= 10) {
+                text.append((char) ('0' + value / divisor % 10));
+            }
+            return text;
+        }
+
+        // Days since 1970-01-01 of a proleptic Gregorian date (civil calendar arithmetic, no objects)
+        static long epochDay(int year, int month, int day) {
+            long y = month <= 2 ? year - 1 : year;
+            long era = Math.floorDiv(y, 400);
+            long yearOfEra = y - era * 400;
+            long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+            long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146_097 + dayOfEra - 719_468;
+        }
+
+        // Inverse of epochDay, packed as year * 10000 + month * 100 + day
+        static int civilDate(long epochDay) {
+            long z = epochDay + 719_468;
+            long era = Math.floorDiv(z, 146_097);
+            long dayOfEra = z - era * 146_097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long shiftedMonth = (5 * dayOfYear + 2) / 153;
+            int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+            int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+            long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+            return (int) (year * 10_000 + (year < 0 ? -1 : 1) * (month * 100 + day));
+        }
+
+        // Parse a fixed-width run of ASCII digits, or -1 if any character is not a digit
+        private static int digits(CharSequence text, int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) return -1;
+                value = value * 10 + digit;
+            }
+            return value;
         }
     }
 
@@ -91,6 +373,9 @@ public class NotesApp {
             System.out.println("5. Save Notes");
             System.out.println("6. Load Notes");
             System.out.println("7. Exit");
+            System.out.println("8. Show Metrics");
+            System.out.println("9. Browse by Date");
+            System.out.println("10. Ranked Search");
             System.out.print("Enter your choice: ");
 
             try {
@@ -104,8 +389,15 @@ public class NotesApp {
                     case 6: loadNotesFromFile(); break;
                     case 7:
                         saveNotesToFile(); // Auto-save before exit
+                        closePersistence();
+                        if (contentCache != null) {
+                            System.out.println(contentCache);
+                        }
                         System.out.println("Thank you for using Notes App!");
                         return;
+                    case 8: System.out.println(metrics); break;
+                    case 9: browseByDate(); break;
+                    case 10: rankedSearch(); break;
                     default:
                         System.out.println("Invalid choice. Please try again.");
                 }
@@ -131,64 +423,199 @@ public class NotesApp {
             return;
         }
 
-        int newId = getNextId();
-        Note newNote = new Note(newId, title, content);
-        notes.add(newNote);
-        System.out.println("Note added successfully! (ID: " + newId + ")");
+        Note newNote = store.add(title, content);
+        System.out.println("Note added successfully! (ID: " + newNote.getId() + ")");
+    }
+
+    // Add many notes at once: reserves one id range and records them for a single background flush
+    public List<Note> addNotes(List<String[]> titlesAndContents) {
+        return store.addAll(titlesAndContents);
     }
 
-    // Get next available ID
-    private int getNextId() {
-        return notes.stream().mapToInt(Note::getId).max().orElse(0) + 1;
+    // The shared store behind this app
+    NotesStore getStore() {
+        return store;
     }
 
     // View all notes
     private void viewAllNotes() {
-        if (notes.isEmpty()) {
+        int total = store.size();
+        if (total == 0) {
             System.out.println("No notes found.");
             return;
         }
 
         System.out.println("\n=== All Notes ===");
-        for (Note note : notes) {
-            System.out.println(note);
-            System.out.println("-".repeat(50));
+        showPages(NotePager.forStore(store), total);
+    }
+
+    // Show notes a page at a time, letting the user move between pages
+    private void showPages(NotePager.Cursor cursor, int total) {
+        NotePager pager = new NotePager(System.out);
+        List<Note> page = cursor.first(PAGE_SIZE);
+        pager.render(page);
+        int start = 0;
+        while (total > PAGE_SIZE) {
+            System.out.printf("Showing %d-%d of %d. [n]ext, [p]revious, [q]uit: ",
+                    start + 1, start + page.size(), total);
+            String command = scanner.nextLine().trim().toLowerCase();
+            if (command.isEmpty() || command.startsWith("n")) {
+                List<Note> next = cursor.next(PAGE_SIZE);
+                if (next.isEmpty()) {
+                    System.out.println("No more notes.");
+                    continue;
+                }
+                start += page.size();
+                page = next;
+            } else if (command.startsWith("p")) {
+                List<Note> previous = cursor.previous(PAGE_SIZE);
+                if (previous.isEmpty()) {
+                    System.out.println("Already at the first page.");
+                    continue;
+                }
+                start = Math.max(0, start - previous.size());
+                page = previous;
+            } else if (command.startsWith("q")) {
+                return;
+            } else {
+                System.out.println("Please enter n, p or q.");
+                continue;
+            }
+            pager.render(page);
         }
     }
 
     // Search notes by title or content
     private void searchNotes() {
-        if (notes.isEmpty()) {
+        if (store.isEmpty()) {
             System.out.println("No notes to search.");
             return;
         }
 
-        System.out.print("Enter search term: ");
+        System.out.print("Enter search term (end with * to search title prefixes): ");
         String searchTerm = scanner.nextLine().trim().toLowerCase();
-        if (searchTerm.isEmpty()) {
+        if (searchTerm.isEmpty() || searchTerm.equals("*")) {
             System.out.println("Search term cannot be empty!");
             return;
         }
 
-        List<Note> matchingNotes = notes.stream()
-                .filter(note -> note.getTitle().toLowerCase().contains(searchTerm) ||
-                               note.getContent().toLowerCase().contains(searchTerm))
-                .collect(ArrayList::new, (list, note) -> list.add(note), (list1, list2) -> list1.addAll(list2));
+        String prefix = titlePrefix(searchTerm);
+        if (prefix != null) {
+            List<String> titles = store.suggestTitles(prefix, TITLE_SUGGESTIONS);
+            if (!titles.isEmpty()) {
+                System.out.println("Titles: " + String.join(", ", titles)
+                        + (titles.size() == TITLE_SUGGESTIONS ? ", ..." : ""));
+            }
+        }
+        List<Note> matchingNotes = findNotes(searchTerm);
 
         if (matchingNotes.isEmpty()) {
             System.out.println("No notes found matching '" + searchTerm + "'");
         } else {
             System.out.println("\n=== Search Results ===");
-            for (Note note : matchingNotes) {
-                System.out.println(note);
-                System.out.println("-".repeat(50));
+            showPages(NotePager.forList(matchingNotes), matchingNotes.size());
+        }
+    }
+
+    // Resolve a search term through the inverted index, or the title index for "prefix*"
+    List<Note> findNotes(String searchTerm) {
+        String prefix = titlePrefix(searchTerm);
+        if (prefix != null) {
+            return store.findByTitlePrefix(prefix, Integer.MAX_VALUE);
+        }
+        return store.search(searchTerm);
+    }
+
+    // The prefix of a "prefix*" title search term, or null for a keyword search
+    private static String titlePrefix(String searchTerm) {
+        if (searchTerm.length() < 2 || !searchTerm.endsWith("*")) {
+            return null;
+        }
+        return searchTerm.substring(0, searchTerm.length() - 1);
+    }
+
+    // Show the notes most relevant to a query, best first
+    private void rankedSearch() {
+        if (store.isEmpty()) {
+            System.out.println("No notes to search.");
+            return;
+        }
+
+        System.out.print("Enter search terms: ");
+        String query = scanner.nextLine().trim().toLowerCase();
+        if (query.isEmpty()) {
+            System.out.println("Search term cannot be empty!");
+            return;
+        }
+
+        List<Note> ranked = store.rankedSearch(query, RANKED_RESULTS);
+        if (ranked.isEmpty()) {
+            System.out.println("No notes found matching '" + query + "'");
+        } else {
+            System.out.println("\n=== Top " + ranked.size() + " Results ===");
+            showPages(NotePager.forList(ranked), ranked.size());
+        }
+    }
+
+    // Show notes between two dates, or the latest N notes
+    private void browseByDate() {
+        if (store.isEmpty()) {
+            System.out.println("No notes found.");
+            return;
+        }
+
+        System.out.print("Enter a date range (e.g. 2024-01-01 2024-01-31T12:00) or a count for the latest notes: ");
+        String[] parts = scanner.nextLine().trim().split("\\s+");
+        List<Note> found;
+        try {
+            if (parts.length == 1 && parts[0].matches("\\d+")) {
+                found = store.latest(Integer.parseInt(parts[0]));
+            } else if (parts.length == 2) {
+                found = store.findBetween(parseTimeBound(parts[0], false), parseTimeBound(parts[1], true), Integer.MAX_VALUE);
+            } else {
+                System.out.println("Please enter two dates or a count.");
+                return;
             }
+        } catch (NumberFormatException | DateTimeException e) {
+            System.out.println("Invalid date or count: " + e.getMessage());
+            return;
+        }
+
+        if (found.isEmpty()) {
+            System.out.println("No notes found in that range.");
+        } else {
+            System.out.println("\n=== Notes by Date ===");
+            showPages(NotePager.forList(found), found.size());
+        }
+    }
+
+    // Epoch millis of a yyyy-MM-dd date or yyyy-MM-ddTHH:mm[:ss] date-time; a bare end date covers its whole day
+    static long parseTimeBound(String text, boolean end) {
+        if (text.indexOf('T') < 0) {
+            LocalDate date = LocalDate.parse(text);
+            return end ? Note.toEpochMillis(date.plusDays(1).atStartOfDay()) - 1 : Note.toEpochMillis(date.atStartOfDay());
         }
+        return Note.parseTimestamp(text, 0, text.length());
+    }
+
+    // Look up a note by id
+    public Note getById(int id) {
+        return store.get(id);
+    }
+
+    // Copy of all notes in insertion order
+    List<Note> allNotes() {
+        return store.snapshot();
+    }
+
+    // Delete a note; the deletion reaches the log in the background
+    boolean deleteNoteById(int id) {
+        return store.delete(id) != null;
     }
 
     // Delete a note by ID
     private void deleteNote() {
-        if (notes.isEmpty()) {
+        if (store.isEmpty()) {
             System.out.println("No notes to delete.");
             return;
         }
@@ -197,8 +624,7 @@ public class NotesApp {
         System.out.print("Enter the ID of the note to delete: ");
         try {
             int id = Integer.parseInt(scanner.nextLine());
-            boolean removed = notes.removeIf(note -> note.getId() == id);
-            if (removed) {
+            if (deleteNoteById(id)) {
                 System.out.println("Note deleted successfully!");
             } else {
                 System.out.println("No note found with ID: " + id);
@@ -208,48 +634,484 @@ public class NotesApp {
         }
     }
 
-    // Save notes to file
-    private void saveNotesToFile() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(NOTES_FILE))) {
-            for (Note note : notes) {
-                writer.write(note.toFileFormat());
-                writer.newLine();
+    // Wait for pending changes, then stop the background writer and release the log and the directory
+    void closePersistence() {
+        try {
+            autoSaver.close();
+            System.out.println("All changes saved.");
+        } catch (IOException e) {
+            System.err.println("Error saving notes: " + e.getMessage());
+        }
+        if (directoryLock != null) {
+            try {
+                directoryLock.close();
+            } catch (IOException e) {
+                System.err.println("Error unlocking notes: " + e.getMessage());
             }
-            System.out.println("Notes saved to " + NOTES_FILE + " successfully!");
+            directoryLock = null;
+        }
+        if (METRICS_FILE != null) {
+            try (Writer out = new FileWriter(METRICS_FILE, StandardCharsets.UTF_8)) {
+                out.write(metrics.getJson());
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    // Block until every change made so far is in the log on disk
+    void awaitDurable() {
+        try {
+            autoSaver.awaitDurable();
         } catch (IOException e) {
             System.err.println("Error saving notes: " + e.getMessage());
         }
     }
 
-    // Load notes from file
-    private void loadNotesFromFile() {
-        File file = new File(NOTES_FILE);
-        if (!file.exists()) {
-            System.out.println("Notes file not found. Starting with empty notes.");
-            return;
+    // Save notes in the background: flush pending changes, compacting the log once it has grown large
+    void saveNotesToFile() {
+        int pending = autoSaver.pendingCount();
+        if (operationLog.getRecordCount() + pending >= compactionThreshold()) {
+            autoSaver.compact();
+            System.out.println("Saving notes to " + snapshotFile() + " in the background.");
+        } else {
+            autoSaver.flush();
+            System.out.println("Saving " + pending + " pending changes to " + logFile.getPath() + " in the background.");
+        }
+    }
+
+    // Log records at which the log is compacted into a snapshot
+    private int compactionThreshold() {
+        return Math.max(MIN_COMPACTION_RECORDS, store.size() / 2);
+    }
+
+    // Write a full snapshot and truncate the operation log, waiting for it to finish
+    void compactLog() {
+        try {
+            autoSaver.compact().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (java.util.concurrent.ExecutionException e) {
+            System.err.println("Error saving notes: " + e.getCause().getMessage());
+        }
+    }
+
+    // Snapshot file for the configured format
+    private String snapshotFile() {
+        return snapshotFile(CONFIGURED_FORMAT);
+    }
+
+    private String snapshotFile(SnapshotFormat format) {
+        switch (format) {
+            case SHARDED: return new File(notesFile.getParentFile(), "notes-*.txt").getPath();
+            case BINARY: return binaryNotesFile.getPath();
+            case COMPRESSED: return compressedNotesFile.getPath();
+            default: return notesFile.getPath();
+        }
+    }
+
+    // Files the snapshot is read from, in whichever format is on disk; notes.txt when there is no snapshot
+    private List<File> snapshotSources() {
+        List<File> files = snapshotFiles(dataDir, snapshotFormatOnDisk(dataDir));
+        return files.isEmpty() ? Collections.singletonList(notesFile) : files;
+    }
+
+    // Existing snapshot files of a format in the data directory (null for the working directory)
+    static List<File> snapshotFiles(File dataDir, SnapshotFormat format) {
+        if (format == SnapshotFormat.SHARDED) {
+            return ShardedNotesFiles.existingFiles(new File(dataDir, NOTES_FILE).getAbsoluteFile().getParentFile());
+        }
+        File file = new File(dataDir, format == SnapshotFormat.BINARY ? BINARY_NOTES_FILE
+                : format == SnapshotFormat.COMPRESSED ? COMPRESSED_NOTES_FILE : NOTES_FILE);
+        return file.exists() ? Collections.singletonList(file) : Collections.emptyList();
+    }
+
+    // Format of the most recently written snapshot, so a run with another -Dnotes.format never reads
+    // a stale one; the configured format wins ties and is assumed when there is no snapshot at all
+    static SnapshotFormat snapshotFormatOnDisk(File dataDir) {
+        SnapshotFormat newest = CONFIGURED_FORMAT;
+        long newestModified = lastModified(snapshotFiles(dataDir, newest));
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            long modified = lastModified(snapshotFiles(dataDir, format));
+            if (modified > newestModified) {
+                newest = format;
+                newestModified = modified;
+            }
+        }
+        return newest;
+    }
+
+    private static long lastModified(List<File> files) {
+        long latest = Long.MIN_VALUE;
+        for (File file : files) {
+            latest = Math.max(latest, file.lastModified());
         }
+        return latest;
+    }
 
-        notes.clear();
-        try (BufferedReader reader = new BufferedReader(new FileReader(NOTES_FILE))) {
+    private List<FileStamp> currentSnapshotStamps() {
+        List<FileStamp> stamps = new ArrayList<>();
+        for (File file : snapshotSources()) {
+            stamps.add(FileStamp.of(file));
+        }
+        return stamps;
+    }
+
+    // A changed note must be rewritten with its shard at the next compaction
+    private void markShardDirty(int id) {
+        if (shardFiles != null) {
+            shardFiles.markDirty(id);
+        }
+    }
+
+    // Write the given notes to the snapshot file in the configured format
+    private void writeSnapshot(List<Note> snapshot) throws IOException {
+        // Replacing a snapshot this app never loaded would lose its notes once the log is truncated
+        List<FileStamp> loadedStamps = snapshotStamps != null
+                ? snapshotStamps : Collections.singletonList(FileStamp.MISSING);
+        if (!currentSnapshotStamps().equals(loadedStamps)) {
+            throw new IOException("The snapshot on disk changed since it was loaded; reload the notes before saving");
+        }
+        long start = System.nanoTime();
+        long bytes;
+        if (shardFiles != null) {
+            BitSet shards = capturedShards != null ? capturedShards : shardFiles.takeDirty();
+            capturedShards = null;
+            try {
+                bytes = shardFiles.write(snapshot, shards);
+            } catch (IOException | RuntimeException e) {
+                shardFiles.restoreDirty(shards);
+                throw e;
+            }
+        } else if (BINARY_FORMAT) {
+            BinaryNotesFile.write(binaryNotesFile.toPath(), snapshot);
+            bytes = binaryNotesFile.length();
+        } else if (COMPRESSED_FORMAT) {
+            CompressedNotesFile.write(compressedNotesFile.toPath(), snapshot);
+            bytes = compressedNotesFile.length();
+        } else {
+            snapshotWriter.write(notesFile.toPath(), snapshot);
+            bytes = snapshotWriter.getBytesWritten();
+        }
+        // Snapshots in other formats are now stale; with them gone every format loads this one
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            if (format != CONFIGURED_FORMAT) {
+                for (File file : snapshotFiles(dataDir, format)) {
+                    if (!file.delete()) {
+                        System.err.println("Could not remove stale snapshot " + file);
+                    }
+                }
+            }
+        }
+        // The store already holds exactly these notes, so a reload need not read them back
+        snapshotStamps = currentSnapshotStamps();
+        metrics.addBytesWritten(bytes);
+        metrics.record(NotesMetrics.SNAPSHOT, start);
+    }
+
+    // Read the snapshot into the table
+    private void readSnapshot(NoteTable loaded, IdAllocator sequence) throws IOException {
+        SnapshotFormat format = snapshotFormatOnDisk(dataDir);
+        List<File> files = snapshotFiles(dataDir, format);
+        if (shardFiles != null && format != SnapshotFormat.SHARDED) {
+            // Every note moves into the shards at the next compaction
+            BitSet allShards = new BitSet();
+            allShards.set(0, shardFiles.shardCount());
+            shardFiles.restoreDirty(allShards);
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        if (format == SnapshotFormat.SHARDED) {
+            ShardedNotesFiles shards = shardFiles != null
+                    ? shardFiles : new ShardedNotesFiles(files.get(0).getParentFile(), files.size());
+            for (Note note : shards.load()) {
+                loaded.put(note);
+                sequence.observe(note.getId());
+            }
+            return;
+        }
+        if (format == SnapshotFormat.COMPRESSED) {
+            CompressedNotesFile.open(compressedNotesFile.toPath()).forEach(note -> {
+                loaded.put(note);
+                sequence.observe(note.getId());
+            });
+            return;
+        }
+        if (format == SnapshotFormat.BINARY) {
+            BinaryNotesFile file = BinaryNotesFile.open(binaryNotesFile.toPath());
+            if (LAZY_CONTENT) {
+                contentCache = new ContentCache(CONTENT_CACHE_CHARS, file::readContent);
+                file.forEachLazy(contentCache, note -> {
+                    loaded.put(note);
+                    sequence.observe(note.getId());
+                });
+            } else {
+                file.forEach(note -> {
+                    loaded.put(note);
+                    sequence.observe(note.getId());
+                });
+            }
+            return;
+        }
+        if (notesFile.length() >= PARALLEL_LOAD_BYTES) {
+            for (Note note : new ParallelNotesLoader().load(notesFile.toPath())) {
+                loaded.put(note);
+                sequence.observe(note.getId());
+            }
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(notesFile, StandardCharsets.UTF_8))) {
             String line;
-            int loadedCount = 0;
             while ((line = reader.readLine()) != null) {
                 Note note = Note.fromFileFormat(line.trim());
                 if (note != null) {
-                    notes.add(note);
-                    loadedCount++;
+                    loaded.put(note);
+                    sequence.observe(note.getId());
                 }
             }
-            System.out.println("Loaded " + loadedCount + " notes from " + NOTES_FILE);
+        }
+    }
+
+    // Load notes from disk: only new log records when the snapshot is unchanged, otherwise everything
+    void loadNotesFromFile() {
+        loadNotesFromFile(true);
+    }
+
+    // Load notes from disk, optionally forcing a full reload
+    void loadNotesFromFile(boolean incremental) {
+        // Anything still pending would be lost by reloading, so make it durable first
+        awaitDurable();
+        if (!snapshotSources().get(0).exists() && !logFile.exists()) {
+            System.out.println("Notes file not found. Starting with empty notes.");
+            return;
+        }
+
+        List<FileStamp> stamps = currentSnapshotStamps();
+        if (incremental && stamps.equals(snapshotStamps) && reloadNewLogRecords()) {
+            return;
+        }
+        loadAll(stamps);
+    }
+
+    // Apply log records appended since the last replay; false if the log was rewritten and a full load is needed
+    private boolean reloadNewLogRecords() {
+        long start = System.nanoTime();
+        long offset = operationLog.getReplayedOffset();
+        List<Map.Entry<Integer, Note>> changes = new ArrayList<>();
+        IdAllocator sequence = new IdAllocator();
+        int replayed;
+        try {
+            replayed = operationLog.replayNew(new OperationLog.Replayer() {
+                @Override
+                public void put(Note note) {
+                    changes.add(new AbstractMap.SimpleImmutableEntry<>(note.getId(), note));
+                    markShardDirty(note.getId());
+                }
+
+                @Override
+                public void remove(int id) {
+                    changes.add(new AbstractMap.SimpleImmutableEntry<>(id, null));
+                    markShardDirty(id);
+                }
+
+                @Override
+                public void sequence(int nextId) { sequence.advanceTo(nextId); }
+            });
+        } catch (IOException e) {
+            System.err.println("Error replaying log: " + e.getMessage());
+            return true;
+        }
+        if (replayed < 0) {
+            return false;
+        }
+
+        store.applyChanges(changes, sequence.peek());
+        metrics.addNotesParsed(changes.size());
+        metrics.addBytesRead(operationLog.getReplayedOffset() - offset);
+        metrics.record(NotesMetrics.LOAD, start);
+        System.out.println(replayed == 0
+                ? "Notes are up to date (" + store.size() + " notes)."
+                : "Applied " + replayed + " new logged changes (" + store.size() + " notes).");
+        return true;
+    }
+
+    // Read the whole snapshot, replay the whole log over it and swap the result in
+    private void loadAll(List<FileStamp> stamps) {
+        long start = System.nanoTime();
+        NoteTable loaded = COLUMNAR ? new ColumnarNoteTable(OFF_HEAP) : new NoteTable();
+        IdAllocator sequence = new IdAllocator();
+        try {
+            readSnapshot(loaded, sequence);
         } catch (IOException e) {
             System.err.println("Error loading notes: " + e.getMessage());
+            return;
         }
+
+        long parsed = loaded.size();
+        int replayed;
+        try {
+            replayed = operationLog.replay(new OperationLog.Replayer() {
+                @Override
+                public void put(Note note) {
+                    loaded.put(note);
+                    sequence.observe(note.getId());
+                    // Logged changes are not in the snapshot yet
+                    markShardDirty(note.getId());
+                }
+
+                @Override
+                public void remove(int id) {
+                    loaded.remove(id);
+                    sequence.observe(id);
+                    markShardDirty(id);
+                }
+
+                @Override
+                public void sequence(int nextId) { sequence.advanceTo(nextId); }
+            });
+        } catch (IOException e) {
+            System.err.println("Error replaying log: " + e.getMessage());
+            return;
+        }
+
+        loaded.trimToSize();
+        store.replaceAll(loaded, sequence.peek());
+        snapshotStamps = stamps;
+        long bytesRead = logFile.length();
+        for (File file : snapshotSources()) {
+            bytesRead += file.length();
+        }
+        metrics.addNotesParsed(parsed);
+        metrics.addBytesRead(bytesRead);
+        metrics.record(NotesMetrics.LOAD, start);
+        System.out.println("Loaded " + loaded.size() + " notes from " + snapshotFile(snapshotFormatOnDisk(dataDir))
+                + (replayed > 0 ? " (" + replayed + " logged changes replayed)" : ""));
     }
 
     // Main method
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0) {
+            System.exit(runBatch(args));
+        }
         System.out.println("Welcome to Java Notes App with File I/O!");
-        NotesApp app = new NotesApp();
+        NotesApp app = open();
+        if (app == null) {
+            System.exit(1);
+        }
         app.showMenu();
     }
+
+    // Open the notes in the working directory; null, with the reason on stderr, when another session has them
+    private static NotesApp open() {
+        try {
+            return new NotesApp();
+        } catch (IOException e) {
+            System.err.println("Error opening notes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Serve the HTTP API until the process is stopped; changes are saved on shutdown
+    private static void runServer(String[] args) {
+        int port;
+        try {
+            port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT;
+        } catch (NumberFormatException e) {
+            System.err.println("Not a valid port: " + args[1]);
+            System.exit(2);
+            return;
+        }
+        NotesApp app = open();
+        if (app == null) {
+            System.exit(1);
+            return;
+        }
+        NotesHttpServer server;
+        try {
+            server = new NotesHttpServer(app.store, port);
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            app.closePersistence();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            app.saveNotesToFile();
+            app.closePersistence();
+        }, "notes-shutdown"));
+        server.start();
+        System.out.println("Serving notes on http://localhost:" + server.getPort() + "/notes (Ctrl+C to stop)");
+    }
+
+    // Keyword search of a compressed snapshot and the operation log without loading the store, inflating
+    // only the blocks whose Bloom filters admit every query token; null when there is no compressed snapshot
+    static List<Note> searchOnDisk(File dataDir, String searchTerm) throws IOException {
+        File snapshot = new File(dataDir, COMPRESSED_NOTES_FILE);
+        if (snapshotFormatOnDisk(dataDir) != SnapshotFormat.COMPRESSED || !snapshot.exists()) {
+            return null;
+        }
+        // Logged changes supersede the snapshot's copy of a note; null marks a delete
+        Map<Integer, Note> changes = new HashMap<>();
+        OperationLog log = new OperationLog(new File(dataDir, LOG_FILE).getPath());
+        try {
+            log.replay(new OperationLog.Replayer() {
+                @Override
+                public void put(Note note) { changes.put(note.getId(), note); }
+
+                @Override
+                public void remove(int id) { changes.put(id, null); }
+
+                @Override
+                public void sequence(int nextId) { }
+            });
+        } finally {
+            log.close();
+        }
+
+        List<Note> matches = new ArrayList<>();
+        for (Note note : CompressedNotesFile.open(snapshot.toPath()).search(searchTerm)) {
+            if (!changes.containsKey(note.getId())) {
+                matches.add(note);
+            }
+        }
+        List<String> queryTokens = InvertedIndex.tokenize(searchTerm);
+        for (Note note : changes.values()) {
+            if (note != null && CompressedNotesFile.matches(note, queryTokens, searchTerm)) {
+                matches.add(note);
+            }
+        }
+        matches.sort(Comparator.comparingInt(Note::getId));
+        return matches;
+    }
+
+    // Headless mode: results go to stdout, every other message to stderr
+    private static int runBatch(String[] args) {
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        if (!BatchCli.isCommand(args[0])) {
+            return new BatchCli(null, System.in, stdout, System.err).run(args);
+        }
+        if (BatchCli.isKeywordSearch(args) && snapshotFormatOnDisk(null) == SnapshotFormat.COMPRESSED
+                && new File(COMPRESSED_NOTES_FILE).exists()) {
+            // A one-off search reads just the snapshot blocks that can match instead of loading every note
+            int exitCode = new BatchCli(null, System.in, stdout, System.err).run(args);
+            stdout.flush();
+            return exitCode;
+        }
+        NotesApp app = open();
+        if (app == null) {
+            return 1;
+        }
+        int exitCode = new BatchCli(app, System.in, stdout, System.err).run(args);
+        app.saveNotesToFile();
+        app.closePersistence();
+        stdout.flush();
+        return exitCode;
+    }
 }
@@ -0,0 +1,570 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micro-benchmarks for the Notes Application hot paths.
+ * Builds a deterministic synthetic corpus at each requested size and times
+ * Note.toFileFormat/fromFileFormat, snapshot save, full load, incremental
+ * reload, single-note fetch from a block-compressed file, keyword search
+ * of that file through its per-block Bloom filters, search, top-10 BM25
+ * ranked search, title prefix search, time range queries and delete, plus
+ * a mixed multi-threaded workload against the shared NotesStore that also
+ * checks its recorded history is linearizable, and the memory per note and
+ * added full GC time of the ArrayList, NoteTable, columnar and off-heap
+ * in-memory layouts ("memory").
+ * Each benchmark runs warmup rounds before the measured rounds and reports
+ * the average time and bytes allocated (by the benchmark thread) per operation.
+ *
+ * Usage: java -Xmx4g NotesBenchmark [sizes] [benchmark names...]
+ *   sizes defaults to 1000,100000,1000000
+ *   e.g. java NotesBenchmark 1000,100000 search delete
+ */
+public class NotesBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    static final int VOCABULARY_SIZE = 5000;
+    private static final int WORDS_PER_CONTENT = 24;
+    private static final int DELETES_PER_ROUND = 1000;
+    private static final int CONCURRENT_THREADS = 4;
+    private static final int CONCURRENT_OPS_PER_THREAD = 2000;
+    private static final int MEMORY_SAMPLE_NOTES = 200_000;
+
+    // Consumed results so the JIT cannot drop the measured work
+    static volatile long sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    interface Benchmark {
+        // Run one round; returns the number of operations performed
+        long run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Destructive benchmarks restore the corpus from the snapshot, so it must not be compacted behind their back
+        System.setProperty("notes.compactionRecords", String.valueOf(Integer.MAX_VALUE));
+        int[] sizes = {1_000, 100_000, 1_000_000};
+        Set<String> selected = new HashSet<>();
+        for (String arg : args) {
+            if (Character.isDigit(arg.charAt(0))) {
+                sizes = Arrays.stream(arg.split(",")).mapToInt(Integer::parseInt).toArray();
+            } else {
+                selected.add(arg);
+            }
+        }
+
+        System.out.printf("%-20s %10s %12s %14s %12s%n", "benchmark", "notes", "ops/round", "ns/op", "B/op");
+        for (int size : sizes) {
+            Path dir = Files.createTempDirectory("notes-bench");
+            try {
+                runAll(size, dir, selected);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    private static void runAll(int size, Path dir, Set<String> selected) throws Exception {
+        List<NotesApp.Note> corpus = corpus(size);
+        String[] lines = new String[size];
+        for (int i = 0; i < size; i++) {
+            lines[i] = corpus.get(i).toFileFormat();
+        }
+
+        NotesApp app = quietly(() -> new NotesApp(dir.toFile()));
+        List<String[]> drafts = new ArrayList<>(size);
+        for (NotesApp.Note note : corpus) {
+            drafts.add(new String[] {note.getTitle(), note.getContent()});
+        }
+        quietly(() -> app.addNotes(drafts));
+        quietly(() -> { app.compactLog(); return null; });
+
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("toFileFormat", () -> {
+            long length = 0;
+            for (NotesApp.Note note : corpus) {
+                length += note.toFileFormat().length();
+            }
+            sink += length;
+            return corpus.size();
+        });
+        benchmarks.put("fromFileFormat", () -> {
+            long ids = 0;
+            for (String line : lines) {
+                ids += NotesApp.Note.fromFileFormat(line).getId();
+            }
+            sink += ids;
+            return lines.length;
+        });
+        benchmarks.put("fromFileFormatSplit", () -> {
+            long ids = 0;
+            for (String line : lines) {
+                ids += splitFromFileFormat(line).getId();
+            }
+            sink += ids;
+            return lines.length;
+        });
+        benchmarks.put("save", () -> {
+            app.compactLog();
+            return 1;
+        });
+        benchmarks.put("load", () -> {
+            app.loadNotesFromFile(false);
+            return 1;
+        });
+        benchmarks.put("reload", () -> {
+            // Append a few changes straight to the log; reload only applies those
+            try (OperationLog other = new OperationLog(dir.resolve("notes.log").toString())) {
+                for (int i = 0; i < 10; i++) {
+                    other.logAdd(new NotesApp.Note(size + 1 + i, "appended " + i, "straight to the log"));
+                }
+            }
+            app.loadNotesFromFile();
+            return -1;
+        });
+        benchmarks.put("titlePrefix", () -> {
+            long hits = 0;
+            for (int i = 0; i < 100; i++) {
+                String prefix = word(i * 37 % VOCABULARY_SIZE);
+                hits += app.findNotes(prefix + "*").size();
+                hits += app.getStore().suggestTitles(prefix.substring(0, 2), 10).size();
+            }
+            sink += hits;
+            return 200;
+        });
+        long[] times = app.allNotes().stream().mapToLong(NotesApp.Note::getTimestampMillis).sorted().toArray();
+        benchmarks.put("timeRange", () -> {
+            // Windows of about 1% of the notes, plus the latest 20
+            int window = Math.max(1, size / 100);
+            long hits = 0;
+            for (int i = 0; i < 100; i++) {
+                int from = (int) ((long) i * (size - window) / 100);
+                hits += app.getStore().findBetween(times[from], times[from + window - 1], Integer.MAX_VALUE).size();
+                hits += app.getStore().latest(20).size();
+            }
+            sink += hits;
+            return 200;
+        });
+        CompressedNotesFile[] compressed = new CompressedNotesFile[1];
+        Action<CompressedNotesFile> compressedFile = () -> {
+            if (compressed[0] == null) {
+                Path path = dir.resolve("bench.dfz");
+                CompressedNotesFile.write(path, corpus);
+                compressed[0] = CompressedNotesFile.open(path);
+            }
+            return compressed[0];
+        };
+        benchmarks.put("compressedGet", () -> {
+            CompressedNotesFile file = compressedFile.run();
+            Random random = new Random(11);
+            long ids = 0;
+            for (int i = 0; i < 100; i++) {
+                ids += file.get(1 + random.nextInt(size)).getId();
+            }
+            sink += ids;
+            return 100;
+        });
+        benchmarks.put("compressedSearch", () -> {
+            // Rare and absent terms, which the block filters rule out for most blocks
+            CompressedNotesFile file = compressedFile.run();
+            long hits = 0;
+            for (int i = 0; i < 10; i++) {
+                String term = "rare" + i;
+                int found = file.search(term).size();
+                check(found == app.findNotes(term).size(), "compressed search for " + term + " disagrees with the index");
+                hits += found;
+                hits += file.search("absent" + i).size();
+            }
+            sink += hits;
+            return 20;
+        });
+        benchmarks.put("search", () -> {
+            long hits = 0;
+            for (int i = 0; i < 100; i++) {
+                hits += app.findNotes(word(i * 37 % VOCABULARY_SIZE)).size();
+                hits += app.findNotes("rare" + (i % 10)).size();
+            }
+            sink += hits;
+            return 200;
+        });
+        benchmarks.put("rankedSearch", () -> {
+            // Top 10 of common words (hundreds of matches at 100k notes), two-word queries and rare words
+            long hits = 0;
+            for (int i = 0; i < 100; i++) {
+                hits += app.getStore().rankedSearch(word(i * 37 % VOCABULARY_SIZE), 10).size();
+                hits += app.getStore().rankedSearch(word(i * 37 % VOCABULARY_SIZE) + " " + word(i * 53 % VOCABULARY_SIZE), 10).size();
+                hits += app.getStore().rankedSearch("rare" + (i % 10), 10).size();
+            }
+            sink += hits;
+            return 300;
+        });
+        benchmarks.put("delete", () -> {
+            int deletes = Math.min(DELETES_PER_ROUND, size);
+            Random random = new Random(7);
+            long deleted = 0;
+            for (int i = 0; i < deletes; i++) {
+                if (app.deleteNoteById(1 + random.nextInt(size))) deleted++;
+            }
+            sink += deleted;
+            // Negative count asks for the corpus to be restored outside of the measured region
+            return -deletes;
+        });
+
+        benchmarks.put("concurrent", () -> {
+            long ops = concurrentWorkload(app.getStore(), size);
+            // Restore the corpus like delete does
+            return -ops;
+        });
+
+        for (Map.Entry<String, Benchmark> entry : benchmarks.entrySet()) {
+            if (!selected.isEmpty() && !selected.contains(entry.getKey())) continue;
+            measure(entry.getKey(), size, entry.getValue(), app, dir);
+        }
+        quietly(() -> { app.closePersistence(); return null; });
+        if (selected.isEmpty() || selected.contains("memory")) {
+            measureMemory(size, lines);
+        }
+    }
+
+    // Retained heap and off-heap bytes per note for each in-memory layout, plus the full GC time it adds;
+    // layouts are built from freshly parsed lines so no text is shared
+    private static void measureMemory(int size, String[] lines) {
+        // Small corpora are built several times over so GC noise does not swamp the result
+        int copies = Math.max(1, MEMORY_SAMPLE_NOTES / size);
+        Map<String, Action<Object>> layouts = new LinkedHashMap<>();
+        layouts.put("arrayList", () -> {
+            List<NotesApp.Note> notes = new ArrayList<>();
+            for (String line : lines) {
+                notes.add(NotesApp.Note.fromFileFormat(line));
+            }
+            return notes;
+        });
+        layouts.put("noteTable", () -> {
+            NoteTable notes = new NoteTable();
+            for (String line : lines) {
+                notes.put(NotesApp.Note.fromFileFormat(line));
+            }
+            notes.trimToSize();
+            return notes;
+        });
+        for (boolean offHeap : new boolean[] {false, true}) {
+            layouts.put(offHeap ? "offHeap" : "columnar", () -> {
+                ColumnarNoteTable notes = new ColumnarNoteTable(offHeap);
+                for (String line : lines) {
+                    notes.put(NotesApp.Note.fromFileFormat(line));
+                }
+                notes.trimToSize();
+                return notes;
+            });
+        }
+
+        System.out.printf("%-20s %10s %12s %14s %12s%n", "memory", "notes", "heap B/note", "off-heap B/note", "full GC +ms");
+        for (Map.Entry<String, Action<Object>> layout : layouts.entrySet()) {
+            try {
+                long before = usedHeap();
+                long baseGcNanos = fullGcNanos();
+                Object[] held = new Object[copies];
+                for (int i = 0; i < copies; i++) {
+                    held[i] = layout.getValue().run();
+                }
+                long retained = (usedHeap() - before) / copies;
+                long gcNanos = fullGcNanos() - baseGcNanos;
+                long offHeapBytes = held[0] instanceof ColumnarNoteTable && ((ColumnarNoteTable) held[0]).isOffHeap()
+                        ? ((ColumnarNoteTable) held[0]).getTextCapacityBytes() : 0;
+                java.lang.ref.Reference.reachabilityFence(held);
+                System.out.printf("%-20s %10d %12.1f %14.1f %12.1f%n", layout.getKey(), size,
+                        (double) retained / size, (double) offHeapBytes / size, gcNanos / 1e6 / copies);
+            } catch (Exception e) {
+                System.out.printf("%-20s %10d failed: %s%n", layout.getKey(), size, e);
+            }
+        }
+    }
+
+    // Duration of one full collection; the best of three to reduce noise
+    private static long fullGcNanos() {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void measure(String name, int size, Benchmark benchmark, NotesApp app, Path dir) throws Exception {
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long totalOps = 0;
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long startBytes = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long ops = quietly(benchmark::run);
+            long elapsed = System.nanoTime() - start;
+            long allocated = THREADS.getThreadAllocatedBytes(thread) - startBytes;
+            if (ops < 0) {
+                // Destructive benchmark: drop the logged changes and reload the snapshot
+                ops = -ops;
+                app.awaitDurable();
+                new FileWriter(dir.resolve("notes.log").toFile()).close();
+                quietly(() -> { app.loadNotesFromFile(false); return null; });
+            }
+            if (round >= WARMUP_ROUNDS) {
+                totalNanos += elapsed;
+                totalBytes += allocated;
+                totalOps += ops;
+            }
+        }
+        System.out.printf("%-20s %10d %12d %14.1f %12.1f%n", name, size, totalOps / MEASURED_ROUNDS,
+                (double) totalNanos / totalOps, (double) totalBytes / totalOps);
+    }
+
+    // Threads adding, reading, searching and deleting at once. Every add, delete, get and search for an
+    // added note's marker is recorded with its start and end time, and the run fails unless that history
+    // is linearizable and the store's size adds up
+    private static long concurrentWorkload(NotesStore store, int size) throws Exception {
+        int initialSize = store.size();
+        // Highest id handed out so far, so threads can read and delete notes other threads just added
+        AtomicInteger newest = new AtomicInteger(store.nextId() - 1);
+        List<List<Event>> histories = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(CONCURRENT_THREADS);
+        try {
+            List<Future<List<Event>>> workers = new ArrayList<>();
+            for (int t = 0; t < CONCURRENT_THREADS; t++) {
+                int worker = t;
+                workers.add(pool.submit(() -> {
+                    Random random = new Random(worker);
+                    List<Event> history = new ArrayList<>();
+                    List<Integer> own = new ArrayList<>();
+                    for (int i = 0; i < CONCURRENT_OPS_PER_THREAD; i++) {
+                        switch (i % 4) {
+                            case 0: {
+                                String marker = "stress" + worker + "x" + i;
+                                long start = System.nanoTime();
+                                int id = store.add(marker, "concurrent " + marker).getId();
+                                history.add(new Event(Event.ADD, id, marker, start, System.nanoTime()));
+                                newest.accumulateAndGet(id, Math::max);
+                                own.add(id);
+                                history.add(get(store, id));
+                                start = System.nanoTime();
+                                NotesApp.Note found = null;
+                                for (NotesApp.Note note : store.search(marker)) {
+                                    if (note.getId() == id) found = note;
+                                }
+                                history.add(new Event(Event.READ, id, found == null ? null : found.getTitle(), start, System.nanoTime()));
+                                break;
+                            }
+                            case 1: {
+                                // Own notes, notes just added by any thread, or corpus notes
+                                int choice = random.nextInt(3);
+                                int id = choice == 0 && !own.isEmpty() ? own.remove(own.size() - 1)
+                                        : choice == 1 ? newest.get() - random.nextInt(8) : 1 + random.nextInt(size);
+                                long start = System.nanoTime();
+                                NotesApp.Note deleted = store.delete(id);
+                                history.add(new Event(Event.DELETE, id, deleted == null ? null : deleted.getTitle(), start, System.nanoTime()));
+                                break;
+                            }
+                            case 2:
+                                sink += store.search(word(random.nextInt(VOCABULARY_SIZE))).size();
+                                break;
+                            default:
+                                history.add(get(store, random.nextBoolean() ? newest.get() - random.nextInt(8) : 1 + random.nextInt(size)));
+                        }
+                    }
+                    return history;
+                }));
+            }
+            for (Future<List<Event>> worker : workers) {
+                try {
+                    histories.add(worker.get());
+                } catch (ExecutionException e) {
+                    throw (Exception) e.getCause();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // Group the history by note, ending each with a read of the final state
+        Map<Integer, List<Event>> byNote = new HashMap<>();
+        for (List<Event> history : histories) {
+            for (Event event : history) {
+                byNote.computeIfAbsent(event.id, id -> new ArrayList<>()).add(event);
+            }
+        }
+        int adds = 0;
+        int deletes = 0;
+        for (Map.Entry<Integer, List<Event>> note : byNote.entrySet()) {
+            List<Event> events = note.getValue();
+            events.add(get(store, note.getKey()));
+            check(linearizable(events), "history of note " + note.getKey() + " is not linearizable: " + events);
+            for (Event event : events) {
+                if (event.kind == Event.ADD) adds++;
+                if (event.kind == Event.DELETE && event.title != null) deletes++;
+            }
+        }
+        check(store.size() == initialSize + adds - deletes,
+                "store holds " + store.size() + " notes, expected " + (initialSize + adds - deletes));
+        return (long) CONCURRENT_THREADS * CONCURRENT_OPS_PER_THREAD;
+    }
+
+    // One operation on a single note, timed from just before it was called to just after it returned
+    private static final class Event {
+        static final int ADD = 0;
+        static final int DELETE = 1;
+        static final int READ = 2;
+        private static final String[] NAMES = {"add", "delete", "read"};
+
+        final int kind;
+        final int id;
+        // Title added, read or deleted; null for a read or delete that found no note
+        final String title;
+        final long start;
+        final long end;
+
+        Event(int kind, int id, String title, long start, long end) {
+            this.kind = kind;
+            this.id = id;
+            this.title = title;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return NAMES[kind] + "(" + title + ")@" + start + ".." + end;
+        }
+    }
+
+    private static Event get(NotesStore store, int id) {
+        long start = System.nanoTime();
+        NotesApp.Note note = store.get(id);
+        return new Event(Event.READ, id, note == null ? null : note.getTitle(), start, System.nanoTime());
+    }
+
+    // Whether one note's history has a sequential order consistent with its timing. Ids are never reused,
+    // so the note is absent until a point inside its add (or was there from the start if it has none) and
+    // present until a point inside its successful delete, if any. Every read or delete that found the note
+    // must fall between the two points and see the added title; every one that found nothing, outside them.
+    private static boolean linearizable(List<Event> events) {
+        Event add = null;
+        Event delete = null;
+        String title = null;
+        // Latest start and earliest end of the operations that found the note
+        long presentStart = Long.MIN_VALUE;
+        long presentEnd = Long.MAX_VALUE;
+        for (Event event : events) {
+            if (event.kind == Event.ADD) {
+                if (add != null) return false;
+                add = event;
+            } else if (event.kind == Event.DELETE && event.title != null) {
+                if (delete != null) return false;
+                delete = event;
+            }
+            if (event.title != null) {
+                if (title != null && !title.equals(event.title)) return false;
+                title = event.title;
+                if (event.kind == Event.READ) {
+                    presentStart = Math.max(presentStart, event.start);
+                    presentEnd = Math.min(presentEnd, event.end);
+                }
+            }
+        }
+        if (add == null && title == null) {
+            // Never seen: consistent with a note that never existed
+            return true;
+        }
+
+        // Latest possible point of the add and earliest possible point of the delete
+        long addFrom = add == null ? Long.MIN_VALUE : add.start;
+        long added = Math.min(add == null ? Long.MIN_VALUE : add.end, presentEnd);
+        long deleteTo = delete == null ? Long.MAX_VALUE : delete.end;
+        long deleted = Math.max(delete == null ? Long.MAX_VALUE : delete.start, presentStart);
+        if (added < addFrom || deleted > deleteTo || addFrom > deleteTo) return false;
+        if (added >= deleted) {
+            // The note can be present for an instant anywhere in the overlap, which every miss can avoid
+            return true;
+        }
+        for (Event event : events) {
+            if (event.title == null && event.start > added && event.end < deleted) return false;
+        }
+        return true;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    // Deterministic synthetic notes; every 1000th note carries one of ten rare words
+    static List<NotesApp.Note> corpus(int size) {
+        Random random = new Random(42);
+        List<NotesApp.Note> notes = new ArrayList<>(size);
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= size; i++) {
+            String title = word(random.nextInt(VOCABULARY_SIZE)) + " " + word(random.nextInt(VOCABULARY_SIZE));
+            text.setLength(0);
+            for (int w = 0; w < WORDS_PER_CONTENT; w++) {
+                if (w > 0) text.append(' ');
+                text.append(word(random.nextInt(VOCABULARY_SIZE)));
+            }
+            if (i % 1000 == 0) {
+                text.append(" rare").append((i / 1000) % 10);
+            }
+            notes.add(new NotesApp.Note(i, title, text.toString()));
+        }
+        return notes;
+    }
+
+    // The original split-based parser, kept as a baseline for fromFileFormat
+    static NotesApp.Note splitFromFileFormat(String line) {
+        String[] parts = line.split("\\|", 4);
+        if (parts.length == 4) {
+            return new NotesApp.Note(
+                    Integer.parseInt(parts[0]),
+                    parts[1],
+                    parts[2],
+                    NotesApp.Note.toEpochMillis(LocalDateTime.parse(parts[3]))
+            );
+        }
+        return null;
+    }
+
+    static String word(int n) {
+        return "w" + Integer.toString(n, 36);
+    }
+
+    interface Action<T> {
+        T run() throws Exception;
+    }
+
+    // Run with stdout discarded so the app's progress messages do not skew timings
+    static <T> T quietly(Action<T> action) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return action.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
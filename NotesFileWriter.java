@@ -0,0 +1,130 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * Crash-safe writer for the text notes file.
+ * Notes are encoded as UTF-8 straight into a reusable direct buffer
+ * (no per-note String is built) and written through the FileChannel of
+ * an AtomicFile replacement, so a crash mid-save leaves the previous file
+ * intact.
+ */
+public class NotesFileWriter {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long bytesWritten;
+
+    // Write every note in file format, one per line, and atomically replace the target
+    public synchronized void write(Path target, Iterable<NotesApp.Note> notes) throws IOException {
+        bytesWritten = 0;
+        buffer.clear();
+        AtomicFile.replace(target, channel -> {
+            for (NotesApp.Note note : notes) {
+                putAscii(channel, Integer.toString(note.getId()));
+                putByte(channel, (byte) '|');
+                putText(channel, note.getTitle());
+                putByte(channel, (byte) '|');
+                putText(channel, note.getContentOnce());
+                putByte(channel, (byte) '|');
+                putTimestamp(channel, note.getTimestampMillis());
+                putByte(channel, (byte) '\n');
+            }
+            drain(channel);
+        });
+    }
+
+    // Bytes written by the last save
+    public synchronized long getBytesWritten() { return bytesWritten; }
+
+    private void putText(FileChannel channel, String text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain(channel);
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain(channel);
+        }
+    }
+
+    // Same text as LocalDateTime.toString() of the note's timestamp, written without building the String
+    private void putTimestamp(FileChannel channel, long millis) throws IOException {
+        long day = Math.floorDiv(millis, 86_400_000L);
+        int date = NotesApp.Note.civilDate(day);
+        int year = date / 10_000;
+        if (year < 0 || year > 9999) {
+            putAscii(channel, NotesApp.Note.fromEpochMillis(millis).toString());
+            return;
+        }
+        int milliOfDay = (int) (millis - day * 86_400_000L);
+        int second = milliOfDay / 1000 % 60;
+        int milli = milliOfDay % 1000;
+        ensureRoom(channel, 23);
+        putDigits(year, 4);
+        buffer.put((byte) '-');
+        putDigits(date / 100 % 100, 2);
+        buffer.put((byte) '-');
+        putDigits(date % 100, 2);
+        buffer.put((byte) 'T');
+        putDigits(milliOfDay / 3_600_000, 2);
+        buffer.put((byte) ':');
+        putDigits(milliOfDay / 60_000 % 60, 2);
+        if (second > 0 || milli > 0) {
+            buffer.put((byte) ':');
+            putDigits(second, 2);
+            if (milli > 0) {
+                buffer.put((byte) '.');
+                putDigits(milli, 3);
+            }
+        }
+    }
+
+    private void putDigits(int value, int width) {
+        int end = buffer.position() + width;
+        for (int i = end - 1; i >= end - width; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private void putAscii(FileChannel channel, String text) throws IOException {
+        ensureRoom(channel, text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putByte(FileChannel channel, byte b) throws IOException {
+        ensureRoom(channel, 1);
+        buffer.put(b);
+    }
+
+    private void ensureRoom(FileChannel channel, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(channel);
+        }
+    }
+
+    private void drain(FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
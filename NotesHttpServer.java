@@ -0,0 +1,372 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Embedded HTTP API over the shared NotesStore.
+ * Endpoints (responses are JSON):
+ * - GET    /notes?after=<id>&limit=<n>   a page of notes in insertion order
+ * - POST   /notes                        add a note from form fields title and content
+ * - GET    /notes/<id>                   one note
+ * - DELETE /notes/<id>                   delete a note
+ * - GET    /search?q=<term>              notes matching the term
+ * - GET    /rank?q=<terms>&limit=<n>     the best matches by BM25 score, best first
+ * - GET    /titles?prefix=<p>&limit=<n>  notes whose title starts with the prefix
+ * - GET    /complete?prefix=<p>&limit=<n> title suggestions for autocompletion
+ * - GET    /between?from=<t>&to=<t>&limit=<n> notes in a date range, oldest first
+ * - GET    /latest?limit=<n>             the most recent notes, newest first
+ * - GET    /metrics                      operation latencies and I/O counters
+ * Each request runs on its own virtual thread when the JVM has them
+ * (Java 21+), so idle connections do not pin a platform thread; older
+ * JVMs fall back to a fixed pool of platform threads.
+ */
+public class NotesHttpServer implements Closeable {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+    private static final int FALLBACK_THREADS = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+
+    private final NotesStore store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public NotesHttpServer(NotesStore store, int port) throws IOException {
+        this.store = store;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/notes", this::handleNotes);
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/rank", this::handleRank);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/titles", exchange -> handleTitlePrefix(exchange, false));
+        server.createContext("/complete", exchange -> handleTitlePrefix(exchange, true));
+        server.createContext("/between", exchange -> handleTimeRange(exchange, true));
+        server.createContext("/latest", exchange -> handleTimeRange(exchange, false));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Port actually bound, useful when started on port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // A virtual thread per request where available; looked up reflectively so the app still runs on Java 17
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "notes-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handleNotes(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/notes") || path.equals("/notes/")) {
+                if (method.equals("GET")) {
+                    listNotes(exchange);
+                } else if (method.equals("POST")) {
+                    addNote(exchange);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+                return;
+            }
+
+            int id;
+            try {
+                id = Integer.parseInt(path.substring("/notes/".length()));
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            if (method.equals("GET")) {
+                NotesApp.Note note = store.get(id);
+                if (note == null) {
+                    sendError(exchange, 404, "Note not found");
+                } else {
+                    send(exchange, 200, appendNote(new StringBuilder(), note));
+                }
+            } else if (method.equals("DELETE")) {
+                if (store.delete(id) == null) {
+                    sendError(exchange, 404, "Note not found");
+                } else {
+                    send(exchange, 200, new StringBuilder("{\"deleted\":").append(id).append('}'));
+                }
+            } else {
+                sendError(exchange, 405, "Method not allowed");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listNotes(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+        int limit;
+        Integer after;
+        try {
+            limit = Math.min(MAX_LIMIT, Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT))));
+            after = query.containsKey("after") ? Integer.valueOf(query.get("after")) : null;
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "Invalid number: " + e.getMessage());
+            return;
+        }
+        if (limit <= 0) {
+            sendError(exchange, 400, "limit must be positive");
+            return;
+        }
+        List<NotesApp.Note> page = after == null ? store.firstPage(limit) : store.pageAfter(after, limit);
+        if (page == null) {
+            sendError(exchange, 404, "Note not found: " + after);
+            return;
+        }
+        send(exchange, 200, appendNotes(new StringBuilder(), page));
+    }
+
+    private void addNote(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Map<String, String> form = parseForm(body);
+        String title = form.getOrDefault("title", "").trim();
+        String content = form.getOrDefault("content", "").trim();
+        if (title.isEmpty() || content.isEmpty()) {
+            sendError(exchange, 400, "title and content are required");
+            return;
+        }
+        // '|' and line breaks would corrupt the notes.txt and log records
+        if (!isStorable(title) || !isStorable(content)) {
+            sendError(exchange, 400, "title and content must not contain '|' or line breaks");
+            return;
+        }
+        send(exchange, 201, appendNote(new StringBuilder(), store.add(title, content)));
+    }
+
+    // Whether a field can be stored in a note line: no '|' and no character that any reader treats as a line break
+    static boolean isStorable(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            switch (field.charAt(i)) {
+                case '|': case '\n': case '\r': case '\u0085': case '\u2028': case '\u2029':
+                    return false;
+                default:
+            }
+        }
+        return true;
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            String term = parseForm(exchange.getRequestURI().getRawQuery()).getOrDefault("q", "").trim().toLowerCase();
+            if (term.isEmpty()) {
+                sendError(exchange, 400, "q is required");
+                return;
+            }
+            send(exchange, 200, appendNotes(new StringBuilder(), store.search(term)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleRank(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+            String terms = query.getOrDefault("q", "").trim().toLowerCase();
+            int limit;
+            try {
+                limit = Math.min(MAX_LIMIT, Integer.parseInt(query.getOrDefault("limit", String.valueOf(NotesApp.RANKED_RESULTS))));
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "Invalid number: " + e.getMessage());
+                return;
+            }
+            if (terms.isEmpty() || limit <= 0) {
+                sendError(exchange, 400, "q and a positive limit are required");
+                return;
+            }
+            send(exchange, 200, appendNotes(new StringBuilder(), store.rankedSearch(terms, limit)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTitlePrefix(HttpExchange exchange, boolean suggestions) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+            String prefix = query.getOrDefault("prefix", "").trim();
+            int limit;
+            try {
+                limit = Math.min(MAX_LIMIT, Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT))));
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "Invalid number: " + e.getMessage());
+                return;
+            }
+            if (prefix.isEmpty() || limit <= 0) {
+                sendError(exchange, 400, "prefix and a positive limit are required");
+                return;
+            }
+            if (!suggestions) {
+                send(exchange, 200, appendNotes(new StringBuilder(), store.findByTitlePrefix(prefix, limit)));
+                return;
+            }
+            StringBuilder json = new StringBuilder("[");
+            for (String title : store.suggestTitles(prefix, limit)) {
+                if (json.length() > 1) json.append(',');
+                appendString(json, title);
+            }
+            send(exchange, 200, json.append(']'));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTimeRange(HttpExchange exchange, boolean between) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+            int limit;
+            try {
+                limit = Math.min(MAX_LIMIT, Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT))));
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "Invalid number: " + e.getMessage());
+                return;
+            }
+            if (limit <= 0) {
+                sendError(exchange, 400, "limit must be positive");
+                return;
+            }
+            if (!between) {
+                send(exchange, 200, appendNotes(new StringBuilder(), store.latest(limit)));
+                return;
+            }
+            if (!query.containsKey("from") || !query.containsKey("to")) {
+                sendError(exchange, 400, "from and to are required");
+                return;
+            }
+            List<NotesApp.Note> found;
+            try {
+                found = store.findBetween(NotesApp.parseTimeBound(query.get("from").trim(), false),
+                        NotesApp.parseTimeBound(query.get("to").trim(), true), limit);
+            } catch (DateTimeException e) {
+                sendError(exchange, 400, "Invalid date: " + e.getMessage());
+                return;
+            }
+            send(exchange, 200, appendNotes(new StringBuilder(), found));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            send(exchange, 200, store.getMetrics().getJson());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Decode application/x-www-form-urlencoded pairs (also used for query strings)
+    static Map<String, String> parseForm(String encoded) {
+        Map<String, String> fields = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) return fields;
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            try {
+                fields.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // Malformed escape: skip the field
+            }
+        }
+        return fields;
+    }
+
+    private static StringBuilder appendNotes(StringBuilder json, List<NotesApp.Note> notes) {
+        json.append('[');
+        for (int i = 0; i < notes.size(); i++) {
+            if (i > 0) json.append(',');
+            appendNote(json, notes.get(i));
+        }
+        return json.append(']');
+    }
+
+    private static StringBuilder appendNote(StringBuilder json, NotesApp.Note note) {
+        json.append("{\"id\":").append(note.getId()).append(",\"title\":");
+        appendString(json, note.getTitle());
+        json.append(",\"content\":");
+        appendString(json, note.getContent());
+        json.append(",\"timestamp\":\"").append(note.getTimestamp()).append("\"}");
+        return json;
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        send(exchange, status, json.append('}'));
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/**
+ * Operation counters and latency histograms for the Notes Application.
+ * Every timed operation has its own LatencyHistogram; recording is
+ * lock-free so the store, the autosave thread and HTTP handlers can all
+ * record concurrently. Also counts bytes read and written by loads,
+ * snapshots and log flushes, and notes parsed at load time. The numbers
+ * are available as a text report (menu), as JSON (HTTP /metrics and
+ * -Dnotes.metricsFile) and over JMX.
+ */
+public class NotesMetrics implements NotesMetricsMBean {
+    static final String ADD = "add";
+    static final String GET = "get";
+    static final String DELETE = "delete";
+    static final String SEARCH = "search";
+    static final String RANKED_SEARCH = "rankedSearch";
+    static final String TITLE_PREFIX = "titlePrefix";
+    static final String TIME_RANGE = "timeRange";
+    static final String LOAD = "load";
+    static final String SNAPSHOT = "snapshot";
+    static final String LOG_FLUSH = "logFlush";
+
+    private static final String JMX_NAME = "NotesApp:type=Metrics";
+
+    private final Map<String, LatencyHistogram> histograms;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder notesParsed = new LongAdder();
+
+    public NotesMetrics() {
+        Map<String, LatencyHistogram> byName = new LinkedHashMap<>();
+        for (String operation : new String[] {ADD, GET, DELETE, SEARCH, RANKED_SEARCH, TITLE_PREFIX, TIME_RANGE, LOAD, SNAPSHOT, LOG_FLUSH}) {
+            byName.put(operation, new LatencyHistogram());
+        }
+        histograms = Collections.unmodifiableMap(byName);
+    }
+
+    // Record an operation that started at startNanos (from System.nanoTime())
+    public void record(String operation, long startNanos) {
+        histogram(operation).record(System.nanoTime() - startNanos);
+    }
+
+    public void addBytesRead(long bytes) { bytesRead.add(bytes); }
+
+    public void addBytesWritten(long bytes) { bytesWritten.add(bytes); }
+
+    public void addNotesParsed(long notes) { notesParsed.add(notes); }
+
+    public LatencyHistogram histogram(String operation) {
+        LatencyHistogram histogram = histograms.get(operation);
+        if (histogram == null) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        return histogram;
+    }
+
+    // Expose these metrics over JMX, replacing any earlier instance
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Error registering metrics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String[] getOperations() { return histograms.keySet().toArray(new String[0]); }
+
+    @Override
+    public long getBytesRead() { return bytesRead.sum(); }
+
+    @Override
+    public long getBytesWritten() { return bytesWritten.sum(); }
+
+    @Override
+    public long getNotesParsed() { return notesParsed.sum(); }
+
+    @Override
+    public long getCount(String operation) { return histogram(operation).getCount(); }
+
+    @Override
+    public double getPercentileMicros(String operation, double percentile) {
+        return histogram(operation).getPercentileNanos(percentile) / 1000.0;
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"bytesRead\":").append(getBytesRead())
+                .append(",\"bytesWritten\":").append(getBytesWritten())
+                .append(",\"notesParsed\":").append(getNotesParsed())
+                .append(",\"operations\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(entry.getKey()).append("\":{\"count\":").append(histogram.getCount())
+                    .append(",\"meanMicros\":").append(micros(histogram.getMeanNanos()))
+                    .append(",\"p50Micros\":").append(micros(histogram.getPercentileNanos(50)))
+                    .append(",\"p99Micros\":").append(micros(histogram.getPercentileNanos(99)))
+                    .append(",\"p999Micros\":").append(micros(histogram.getPercentileNanos(99.9)))
+                    .append(",\"maxMicros\":").append(micros(histogram.getMaxNanos()))
+                    .append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    // Human-readable table for the menu
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(1024);
+        text.append(String.format("%-12s %10s %12s %12s %12s %12s%n", "operation", "count", "p50 us", "p99 us", "p999 us", "max us"));
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format("%-12s %10d %12.1f %12.1f %12.1f %12.1f%n", entry.getKey(), histogram.getCount(),
+                    histogram.getPercentileNanos(50) / 1000.0, histogram.getPercentileNanos(99) / 1000.0,
+                    histogram.getPercentileNanos(99.9) / 1000.0, histogram.getMaxNanos() / 1000.0));
+        }
+        text.append("Bytes read: ").append(getBytesRead())
+                .append(", bytes written: ").append(getBytesWritten())
+                .append(", notes parsed: ").append(getNotesParsed());
+        return text.toString();
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+}
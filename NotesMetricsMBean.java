@@ -0,0 +1,19 @@
+/**
+ * JMX view of NotesMetrics, registered as NotesApp:type=Metrics.
+ */
+public interface NotesMetricsMBean {
+    String[] getOperations();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getNotesParsed();
+
+    // All counters and histograms as one JSON document
+    String getJson();
+
+    long getCount(String operation);
+
+    double getPercentileMicros(String operation, double percentile);
+}
@@ -0,0 +1,322 @@
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe in-memory note store shared by every client of the app.
+ * Holds the id-keyed note table, the search, title and time indexes and the id sequence
+ * behind one read-write lock: lookups, searches, pages and snapshots run
+ * concurrently under the read lock, while add, update and delete take the
+ * write lock so the table and every index change atomically. Each
+ * operation is therefore linearizable. Notes handed out are never mutated
+ * by the store; an update replaces the note with a new object. Client
+ * operations are timed, lock wait included, into NotesMetrics.
+ */
+public class NotesStore {
+    // Notified of every change while the write lock is held
+    interface ChangeListener {
+        void noteChanged(NotesApp.Note note);
+        void noteDeleted(int id);
+    }
+
+    private static final ChangeListener NO_LISTENER = new ChangeListener() {
+        @Override
+        public void noteChanged(NotesApp.Note note) { }
+
+        @Override
+        public void noteDeleted(int id) { }
+    };
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NotesMetrics metrics;
+    private final IdAllocator idAllocator = new IdAllocator();
+    private final InvertedIndex searchIndex = new InvertedIndex();
+    private final TitleIndex titleIndex = new TitleIndex();
+    private final TimeIndex timeIndex = new TimeIndex();
+    private NoteTable notes = new NoteTable();
+    private volatile ChangeListener listener = NO_LISTENER;
+
+    public NotesStore() {
+        this(new NotesMetrics());
+    }
+
+    public NotesStore(NotesMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public NotesMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setChangeListener(ChangeListener listener) {
+        this.listener = listener == null ? NO_LISTENER : listener;
+    }
+
+    public NotesApp.Note add(String title, String content) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            NotesApp.Note note = new NotesApp.Note(idAllocator.next(), title, content);
+            insert(note);
+            return note;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.record(NotesMetrics.ADD, start);
+        }
+    }
+
+    // Add many notes under one lock acquisition with a single reserved id range
+    public List<NotesApp.Note> addAll(List<String[]> titlesAndContents) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            int firstId = idAllocator.reserve(titlesAndContents.size());
+            List<NotesApp.Note> added = new ArrayList<>(titlesAndContents.size());
+            for (int i = 0; i < titlesAndContents.size(); i++) {
+                String[] entry = titlesAndContents.get(i);
+                NotesApp.Note note = new NotesApp.Note(firstId + i, entry[0], entry[1]);
+                insert(note);
+                added.add(note);
+            }
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.record(NotesMetrics.ADD, start);
+        }
+    }
+
+    // Delete a note; returns the removed note or null
+    public NotesApp.Note delete(int id) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            NotesApp.Note note = notes.remove(id);
+            if (note != null) {
+                searchIndex.remove(id, note.getTitle(), note.getContentOnce());
+                titleIndex.remove(id, note.getTitle());
+                timeIndex.remove(id, note.getTimestampMillis());
+                listener.noteDeleted(id);
+            }
+            return note;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.record(NotesMetrics.DELETE, start);
+        }
+    }
+
+    public NotesApp.Note get(int id) {
+        long start = System.nanoTime();
+        NotesApp.Note note = read(() -> notes.get(id));
+        metrics.record(NotesMetrics.GET, start);
+        return note;
+    }
+
+    public int size() {
+        return read(() -> notes.size());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Next id the sequence will hand out
+    public int nextId() {
+        return idAllocator.peek();
+    }
+
+    // Notes matching a lowercase search term, through the inverted index
+    public List<NotesApp.Note> search(String searchTerm) {
+        long start = System.nanoTime();
+        List<NotesApp.Note> found = read(() -> {
+            int[] ids = searchIndex.search(searchTerm);
+            if (ids != null) {
+                return notesFor(ids);
+            }
+            // Nothing indexable in the term (e.g. only punctuation): fall back to a substring scan
+            List<NotesApp.Note> matches = new ArrayList<>();
+            for (NotesApp.Note note : notes) {
+                if (note.getTitle().toLowerCase().contains(searchTerm) ||
+                        note.getContentOnce().toLowerCase().contains(searchTerm)) {
+                    matches.add(note);
+                }
+            }
+            return matches;
+        });
+        metrics.record(NotesMetrics.SEARCH, start);
+        return found;
+    }
+
+    // The limit notes most relevant to the query by BM25 over titles and content, best first
+    public List<NotesApp.Note> rankedSearch(String query, int limit) {
+        long start = System.nanoTime();
+        List<NotesApp.Note> found = read(() -> {
+            int[] ids = searchIndex.rank(query, limit);
+            return ids == null ? new ArrayList<>() : notesFor(ids);
+        });
+        metrics.record(NotesMetrics.RANKED_SEARCH, start);
+        return found;
+    }
+
+    // Notes whose title starts with the prefix (ignoring case), in title order
+    public List<NotesApp.Note> findByTitlePrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        List<NotesApp.Note> found = read(() -> notesFor(titleIndex.withPrefix(prefix, limit)));
+        metrics.record(NotesMetrics.TITLE_PREFIX, start);
+        return found;
+    }
+
+    // Distinct titles starting with the prefix (ignoring case), for autocompletion
+    public List<String> suggestTitles(String prefix, int limit) {
+        long start = System.nanoTime();
+        List<String> titles = read(() -> {
+            List<String> suggestions = new ArrayList<>();
+            for (NotesApp.Note note : notesFor(titleIndex.completions(prefix, limit))) {
+                suggestions.add(note.getTitle());
+            }
+            return suggestions;
+        });
+        metrics.record(NotesMetrics.TITLE_PREFIX, start);
+        return titles;
+    }
+
+    // Notes timestamped from fromMillis to toMillis inclusive, up to limit, oldest first
+    public List<NotesApp.Note> findBetween(long fromMillis, long toMillis, int limit) {
+        long start = System.nanoTime();
+        List<NotesApp.Note> found = read(() -> notesFor(timeIndex.between(fromMillis, toMillis, limit)));
+        metrics.record(NotesMetrics.TIME_RANGE, start);
+        return found;
+    }
+
+    // The limit most recently timestamped notes, newest first
+    public List<NotesApp.Note> latest(int limit) {
+        long start = System.nanoTime();
+        List<NotesApp.Note> found = read(() -> notesFor(timeIndex.latest(limit)));
+        metrics.record(NotesMetrics.TIME_RANGE, start);
+        return found;
+    }
+
+    // Caller holds a lock
+    private List<NotesApp.Note> notesFor(int[] ids) {
+        List<NotesApp.Note> notesFound = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            NotesApp.Note note = notes.get(id);
+            if (note != null) {
+                notesFound.add(note);
+            }
+        }
+        return notesFound;
+    }
+
+    // Copy of every note in insertion order
+    public List<NotesApp.Note> snapshot() {
+        return snapshot(null);
+    }
+
+    // Copy of every note; atCapture runs before any further change can be made
+    public List<NotesApp.Note> snapshot(Runnable atCapture) {
+        return read(() -> {
+            List<NotesApp.Note> copy = new ArrayList<>(notes.size());
+            for (NotesApp.Note note : notes) {
+                copy.add(note);
+            }
+            if (atCapture != null) {
+                atCapture.run();
+            }
+            return copy;
+        });
+    }
+
+    // First page of notes in insertion order
+    public List<NotesApp.Note> firstPage(int count) {
+        return read(() -> notes.pageForward(0, count));
+    }
+
+    // Page after the note with the given id, or null if that note no longer exists
+    public List<NotesApp.Note> pageAfter(int id, int count) {
+        return read(() -> {
+            int position = notes.positionOf(id);
+            return position < 0 ? null : notes.pageForward(position + 1, count);
+        });
+    }
+
+    // Page before the note with the given id, or null if that note no longer exists
+    public List<NotesApp.Note> pageBefore(int id, int count) {
+        return read(() -> {
+            int position = notes.positionOf(id);
+            return position < 0 ? null : notes.pageBackward(position, count);
+        });
+    }
+
+    // Swap in freshly loaded notes and rebuild the index; no listener calls since nothing changed on disk
+    public void replaceAll(NoteTable loaded, int nextId) {
+        lock.writeLock().lock();
+        try {
+            notes = loaded;
+            searchIndex.clear();
+            titleIndex.clear();
+            timeIndex.clear();
+            for (NotesApp.Note note : notes) {
+                searchIndex.add(note.getId(), note.getTitle(), note.getContentOnce());
+                titleIndex.add(note.getId(), note.getTitle());
+                timeIndex.append(note.getId(), note.getTimestampMillis());
+            }
+            timeIndex.sort();
+            idAllocator.reset();
+            idAllocator.advanceTo(nextId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Apply changes read back from disk (id -> note, or null for a delete) without notifying the listener
+    public void applyChanges(List<Map.Entry<Integer, NotesApp.Note>> changes, int nextId) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Integer, NotesApp.Note> change : changes) {
+                if (change.getValue() == null) {
+                    NotesApp.Note removed = notes.remove(change.getKey());
+                    if (removed != null) {
+                        searchIndex.remove(removed.getId(), removed.getTitle(), removed.getContentOnce());
+                        titleIndex.remove(removed.getId(), removed.getTitle());
+                        timeIndex.remove(removed.getId(), removed.getTimestampMillis());
+                    }
+                    idAllocator.observe(change.getKey());
+                } else {
+                    put(change.getValue());
+                }
+            }
+            idAllocator.advanceTo(nextId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void insert(NotesApp.Note note) {
+        put(note);
+        listener.noteChanged(note);
+    }
+
+    // Caller holds the write lock
+    private void put(NotesApp.Note note) {
+        NotesApp.Note previous = notes.put(note);
+        if (previous != null) {
+            searchIndex.remove(previous.getId(), previous.getTitle(), previous.getContentOnce());
+            titleIndex.remove(previous.getId(), previous.getTitle());
+            timeIndex.remove(previous.getId(), previous.getTimestampMillis());
+        }
+        searchIndex.add(note.getId(), note.getTitle(), note.getContentOnce());
+        titleIndex.add(note.getId(), note.getTitle());
+        timeIndex.add(note.getId(), note.getTimestampMillis());
+        idAllocator.observe(note.getId());
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only operation log (write-ahead log) for the Notes Application.
+ * Every mutation is appended as a single line record instead of rewriting
+ * the whole notes file:
+ * - A|id|title|content|timestamp  (note added)
+ * - U|id|title|content|timestamp  (note updated; only replayed, changes are logged as A)
+ * - D|id                          (note deleted)
+ * - S|nextId                      (id sequence, written after compaction)
+ * The log is replayed on top of the last snapshot at load time and is
+ * truncated once its records have been compacted into a new snapshot.
+ * The log remembers how far it has been replayed, so a reload can apply
+ * just the records appended since.
+ */
+public class OperationLog implements Closeable {
+    static final char ADD = 'A';
+    static final char UPDATE = 'U';
+    static final char DELETE = 'D';
+    static final char SEQUENCE = 'S';
+
+    private final String logFile;
+    private FileOutputStream file;
+    private OutputStream out;
+    private int recordCount;
+    // Byte offset just past the last record replayed, so a later replay can resume there
+    private long replayedOffset;
+    // Records appended by this log after another writer's unreplayed ones; a later replayNew() reads them back
+    private int unreplayedOwnRecords;
+
+    public OperationLog(String logFile) {
+        this.logFile = logFile;
+    }
+
+    // Callback used while replaying the log
+    interface Replayer {
+        void put(NotesApp.Note note);
+        void remove(int id);
+        void sequence(int nextId);
+    }
+
+    public String getLogFile() { return logFile; }
+
+    // Byte offset just past the last record replayed
+    public synchronized long getReplayedOffset() { return replayedOffset; }
+
+    // Number of records appended since the last compaction
+    public synchronized int getRecordCount() { return recordCount; }
+
+    public synchronized void logAdd(NotesApp.Note note) throws IOException {
+        append(ADD + "|" + note.toFileFormat());
+    }
+
+    // Append a batch of coalesced changes (id -> note, or null for a delete) with a single flush
+    public synchronized void logChanges(Collection<Map.Entry<Integer, NotesApp.Note>> changes) throws IOException {
+        if (changes.isEmpty()) return;
+        long lengthBefore = new File(logFile).length();
+        OutputStream out = out();
+        long bytes = 0;
+        for (Map.Entry<Integer, NotesApp.Note> change : changes) {
+            NotesApp.Note note = change.getValue();
+            bytes += write(out, note == null ? DELETE + "|" + change.getKey() : ADD + "|" + note.toFileFormat());
+        }
+        finishAppend(lengthBefore, bytes, changes.size());
+    }
+
+    // Persist the id sequence so ids stay monotonic once the log is compacted away
+    public synchronized void logSequence(int nextId) throws IOException {
+        append(SEQUENCE + "|" + nextId);
+    }
+
+    // Append one record and push it to the OS so it survives a process crash
+    private void append(String record) throws IOException {
+        long lengthBefore = new File(logFile).length();
+        finishAppend(lengthBefore, write(out(), record), 1);
+    }
+
+    // Flush appended records; unless another writer appended since the last replay, they count as replayed
+    private void finishAppend(long lengthBefore, long bytes, int records) throws IOException {
+        out.flush();
+        recordCount += records;
+        long lengthAfter = new File(logFile).length();
+        if (lengthBefore == replayedOffset && lengthAfter == lengthBefore + bytes) {
+            replayedOffset = lengthAfter;
+        } else {
+            unreplayedOwnRecords += records;
+        }
+    }
+
+    // Write one record line, returning its length in bytes
+    private static int write(OutputStream out, String record) throws IOException {
+        byte[] bytes = (record + '\n').getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private OutputStream out() throws IOException {
+        if (out == null) {
+            file = new FileOutputStream(logFile, true);
+            out = new BufferedOutputStream(file, 1 << 16);
+        }
+        return out;
+    }
+
+    // Force appended records to the storage device; appends alone only reach the OS, which survives a crash
+    // of this process but not of the machine
+    public synchronized void sync() throws IOException {
+        if (out != null) {
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    // Replay every record in the log, returning the number of records applied
+    public synchronized int replay(Replayer replayer) throws IOException {
+        int applied = replayFrom(0, replayer);
+        recordCount = applied;
+        unreplayedOwnRecords = 0;
+        return applied;
+    }
+
+    // Replay only records appended since the last replay; -1 if the log was rewritten behind our back
+    public synchronized int replayNew(Replayer replayer) throws IOException {
+        int applied = replayFrom(replayedOffset, replayer);
+        if (applied > 0) {
+            // Records this log appended itself were counted when they were written
+            recordCount += Math.max(0, applied - unreplayedOwnRecords);
+        }
+        if (applied >= 0) {
+            unreplayedOwnRecords = 0;
+        }
+        return applied;
+    }
+
+    // Apply complete records from the given byte offset on, remembering where the last one ended
+    private int replayFrom(long offset, Replayer replayer) throws IOException {
+        File file = new File(logFile);
+        if (!file.exists()) {
+            replayedOffset = 0;
+            return offset == 0 ? 0 : -1;
+        }
+
+        int applied = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                return -1;
+            }
+            channel.position(offset);
+            InputStream in = Channels.newInputStream(channel);
+            byte[] chunk = new byte[1 << 16];
+            // Bytes of a record that continues into the next chunk
+            ByteArrayOutputStream partial = new ByteArrayOutputStream(256);
+            long position = offset;
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != '\n') continue;
+                    String line;
+                    if (partial.size() > 0) {
+                        partial.write(chunk, start, i - start);
+                        line = partial.toString(StandardCharsets.UTF_8);
+                        partial.reset();
+                    } else {
+                        line = new String(chunk, start, i - start, StandardCharsets.UTF_8);
+                    }
+                    if (apply(line, replayer)) {
+                        applied++;
+                    }
+                    start = i + 1;
+                }
+                partial.write(chunk, start, read - start);
+                position += read;
+                // A trailing record without its newline is still being written; pick it up next time
+                replayedOffset = position - partial.size();
+            }
+        }
+        return applied;
+    }
+
+    // Apply one record line; false if it is torn or malformed
+    private static boolean apply(String line, Replayer replayer) {
+        if (line.length() < 3 || line.charAt(1) != '|') {
+            return false;
+        }
+        String payload = line.substring(2);
+        switch (line.charAt(0)) {
+            case ADD:
+            case UPDATE:
+                NotesApp.Note note;
+                try {
+                    note = NotesApp.Note.fromFileFormat(payload.trim());
+                } catch (RuntimeException e) {
+                    return false; // torn record from an interrupted append
+                }
+                if (note == null) return false;
+                replayer.put(note);
+                return true;
+            case DELETE:
+            case SEQUENCE:
+                int value;
+                try {
+                    value = Integer.parseInt(payload.trim());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                if (line.charAt(0) == DELETE) {
+                    replayer.remove(value);
+                } else {
+                    replayer.sequence(value);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Discard all records after they have been compacted into a snapshot
+    public synchronized void truncate() throws IOException {
+        close();
+        new FileWriter(logFile, false).close();
+        recordCount = 0;
+        replayedOffset = 0;
+        unreplayedOwnRecords = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            file = null;
+        }
+    }
+}
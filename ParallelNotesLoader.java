@@ -0,0 +1,127 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Parallel loader for the text notes file.
+ * The file is split into byte ranges that start and end on line
+ * boundaries; each range is mapped, decoded and parsed with
+ * Note.fromFileFormat on a ForkJoinPool worker, and the per-range results
+ * are concatenated in range order so notes come back in file order.
+ */
+public class ParallelNotesLoader {
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+
+    private final ForkJoinPool pool;
+    private final Charset charset;
+
+    public ParallelNotesLoader() {
+        this(ForkJoinPool.commonPool(), StandardCharsets.UTF_8);
+    }
+
+    public ParallelNotesLoader(ForkJoinPool pool, Charset charset) {
+        this.pool = pool;
+        this.charset = charset;
+    }
+
+    // Parse every note in the file, preserving file order
+    public List<NotesApp.Note> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            List<Callable<List<NotesApp.Note>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(() -> parseRange(channel, start, end));
+            }
+
+            List<List<NotesApp.Note>> parts = new ArrayList<>(tasks.size());
+            int total = 0;
+            for (Future<List<NotesApp.Note>> future : pool.invokeAll(tasks)) {
+                List<NotesApp.Note> part = future.get();
+                parts.add(part);
+                total += part.size();
+            }
+
+            List<NotesApp.Note> notes = new ArrayList<>(total);
+            for (List<NotesApp.Note> part : parts) {
+                notes.addAll(part);
+            }
+            return notes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + path);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Error loading " + path, cause);
+        }
+    }
+
+    // Range boundaries, each one just past a newline (or at the start/end of the file)
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunk = size / (pool.getParallelism() * 4L);
+        chunk = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, chunk));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long position = chunk;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        while (position < size) {
+            long lineEnd = nextLineStart(channel, position, probe);
+            if (lineEnd >= size) break;
+            bounds.add(lineEnd);
+            position = lineEnd + chunk;
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Position just after the first newline at or after the given position
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) return channel.size();
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+    }
+
+    private List<NotesApp.Note> parseRange(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharBuffer chars = charset.decode(bytes);
+        List<NotesApp.Note> notes = new ArrayList<>();
+        int lineStart = 0;
+        int limit = chars.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i == limit || chars.get(i) == '\n') {
+                // Trim in place instead of materializing the line
+                int from = lineStart;
+                int to = i;
+                while (from < to && chars.get(from) <= ' ') from++;
+                while (to > from && chars.get(to - 1) <= ' ') to--;
+                if (to > from) {
+                    NotesApp.Note note = NotesApp.Note.fromFileFormat(chars, from, to);
+                    if (note != null) {
+                        notes.add(note);
+                    }
+                }
+                lineStart = i + 1;
+            }
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Text snapshot split across N shard files, notes-0.txt .. notes-(N-1).txt.
+ * A note lives in shard (id mod N). Shards are loaded and written in
+ * parallel, and only shards touched since the last save are rewritten,
+ * so a save of a few changes does not rewrite the whole corpus. Each
+ * shard file is replaced atomically; the operation log is truncated only
+ * after every dirty shard is on disk, so a crash between shards is
+ * repaired by replaying the log.
+ * Shard files left over from a different shard count are still read, and
+ * force a full rewrite after which they are removed.
+ */
+public class ShardedNotesFiles {
+    private static final Pattern SHARD_NAME = Pattern.compile("notes-(\\d+)\\.txt");
+
+    private final File dir;
+    private final int shards;
+    private final ForkJoinPool pool;
+    // Shards whose notes changed since they were last written
+    private final BitSet dirty = new BitSet();
+    // Writers are reused between saves; one per concurrently written shard
+    private final Queue<NotesFileWriter> writers = new ConcurrentLinkedQueue<>();
+
+    public ShardedNotesFiles(File dir, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shards);
+        }
+        this.dir = dir;
+        this.shards = shards;
+        this.pool = ForkJoinPool.commonPool();
+        // A shard that has never been written must be written by the first save
+        for (int shard = 0; shard < shards; shard++) {
+            if (!shardFile(shard).exists()) {
+                dirty.set(shard);
+            }
+        }
+    }
+
+    public int shardCount() { return shards; }
+
+    public int shardOf(int id) {
+        return Math.floorMod(id, shards);
+    }
+
+    public File shardFile(int shard) {
+        return new File(dir, "notes-" + shard + ".txt");
+    }
+
+    // Existing shard files in shard order, including any left over from another shard count
+    public List<File> existingFiles() {
+        return existingFiles(dir);
+    }
+
+    // Existing shard files in the given directory, in shard order
+    public static List<File> existingFiles(File dir) {
+        TreeMap<Integer, File> files = new TreeMap<>();
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = SHARD_NAME.matcher(name);
+                if (matcher.matches()) {
+                    files.put(Integer.parseInt(matcher.group(1)), new File(dir, name));
+                }
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    public synchronized void markDirty(int id) {
+        dirty.set(shardOf(id));
+    }
+
+    // Clear and return the dirty shards; pass them to write()
+    public synchronized BitSet takeDirty() {
+        BitSet taken = (BitSet) dirty.clone();
+        dirty.clear();
+        return taken;
+    }
+
+    // Put back shards whose write failed
+    public synchronized void restoreDirty(BitSet shardsToWrite) {
+        dirty.or(shardsToWrite);
+    }
+
+    // Read every shard file in parallel; notes come back in id order
+    public List<NotesApp.Note> load() throws IOException {
+        List<File> files = existingFiles();
+        List<Callable<List<NotesApp.Note>>> tasks = new ArrayList<>(files.size());
+        for (File file : files) {
+            tasks.add(() -> readShard(file));
+        }
+        List<NotesApp.Note> notes = new ArrayList<>();
+        boolean misplaced = false;
+        try {
+            List<Future<List<NotesApp.Note>>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < files.size(); i++) {
+                int shard = shardNumber(files.get(i));
+                for (NotesApp.Note note : results.get(i).get()) {
+                    misplaced |= shard != shardOf(note.getId());
+                    notes.add(note);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading shards");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Error loading shards", cause);
+        }
+        if (misplaced) {
+            // Written with another shard count: redistribute everything on the next save
+            synchronized (this) {
+                dirty.set(0, shards);
+            }
+        }
+        // Each shard is already in id order, so this is a cheap merge of sorted runs
+        notes.sort(Comparator.comparingInt(NotesApp.Note::getId));
+        return notes;
+    }
+
+    private static List<NotesApp.Note> readShard(File file) throws IOException {
+        List<NotesApp.Note> notes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                NotesApp.Note note = NotesApp.Note.fromFileFormat(line.trim());
+                if (note != null) {
+                    notes.add(note);
+                }
+            }
+        }
+        return notes;
+    }
+
+    // Rewrite the given shards from a full snapshot in parallel; returns the bytes written
+    public long write(List<NotesApp.Note> notes, BitSet shardsToWrite) throws IOException {
+        if (shardsToWrite.isEmpty()) return 0;
+        Map<Integer, List<NotesApp.Note>> byShard = new HashMap<>();
+        for (int shard = shardsToWrite.nextSetBit(0); shard >= 0; shard = shardsToWrite.nextSetBit(shard + 1)) {
+            byShard.put(shard, new ArrayList<>());
+        }
+        for (NotesApp.Note note : notes) {
+            List<NotesApp.Note> shardNotes = byShard.get(shardOf(note.getId()));
+            if (shardNotes != null) {
+                shardNotes.add(note);
+            }
+        }
+
+        List<Callable<Long>> tasks = new ArrayList<>(byShard.size());
+        for (Map.Entry<Integer, List<NotesApp.Note>> entry : byShard.entrySet()) {
+            tasks.add(() -> writeShard(entry.getKey(), entry.getValue()));
+        }
+        long bytes = 0;
+        try {
+            for (Future<Long> result : pool.invokeAll(tasks)) {
+                bytes += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving shards");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Error saving shards", cause);
+        }
+
+        if (shardsToWrite.cardinality() == shards) {
+            // Every note is now in its proper shard, so leftovers from another shard count can go
+            for (File file : existingFiles()) {
+                if (shardNumber(file) >= shards) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private long writeShard(int shard, List<NotesApp.Note> notes) throws IOException {
+        NotesFileWriter writer = writers.poll();
+        if (writer == null) {
+            writer = new NotesFileWriter();
+        }
+        try {
+            writer.write(shardFile(shard).toPath(), notes);
+            return writer.getBytesWritten();
+        } finally {
+            writers.add(writer);
+        }
+    }
+
+    private static int shardNumber(File file) {
+        Matcher matcher = SHARD_NAME.matcher(file.getName());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
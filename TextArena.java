@@ -0,0 +1,152 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chunked store of UTF-8 note text, kept on the heap or off it.
+ * Records are appended to ByteBuffer chunks that grow from 64 KB up to
+ * 64 MB each, and are addressed by a long reference (chunk number << 32 |
+ * offset). A record is never moved or overwritten while its chunk is in
+ * use: deletes only count dead bytes, and compact() copies live records
+ * into fresh chunks and drops the old ones. Off-heap chunks are direct
+ * buffers, so the text costs the garbage collector nothing to trace or
+ * copy however large the corpus grows; their native memory (bounded by
+ * -XX:MaxDirectMemorySize) is released once a dropped chunk becomes
+ * unreachable. Chunks are also content loaders, so a Note can read its
+ * content straight from a chunk and keeps that chunk alive while it does,
+ * even across a compaction.
+ */
+public class TextArena {
+    static final int MIN_CHUNK_SIZE = 64 * 1024;
+    static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private final boolean offHeap;
+    private List<Chunk> chunks = new ArrayList<>();
+    private long liveBytes;
+    private long deadBytes;
+
+    public TextArena(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public boolean isOffHeap() { return offHeap; }
+
+    // Bytes held by live records
+    public long getLiveBytes() { return liveBytes; }
+
+    // Bytes allocated for chunks, used or not
+    public long getCapacityBytes() {
+        long capacity = 0;
+        for (Chunk chunk : chunks) {
+            capacity += chunk.buffer.capacity();
+        }
+        return capacity;
+    }
+
+    // Append first and second back to back as one record; returns the record reference
+    public long add(byte[] first, byte[] second) {
+        int length = first.length + second.length;
+        Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.buffer.capacity() - chunk.used < length) {
+            int last = chunk == null ? 0 : chunk.buffer.capacity();
+            chunk = allocate(Math.max(length, (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, last * 2L))));
+        }
+        int offset = chunk.used;
+        chunk.buffer.put(offset, first);
+        chunk.buffer.put(offset + first.length, second);
+        chunk.used += length;
+        liveBytes += length;
+        return (long) (chunks.size() - 1) << 32 | offset;
+    }
+
+    // Decode length bytes that start at the given offset into a record
+    public String read(long ref, int offset, int length) {
+        return chunk(ref).decode((int) ref + offset, length);
+    }
+
+    // Chunk holding a record, which is also the content loader for references made by loaderRef()
+    public Chunk chunk(long ref) {
+        return chunks.get((int) (ref >>> 32));
+    }
+
+    // Chunk loader reference for length bytes at the given offset into a record
+    public static long loaderRef(long ref, int offset, int length) {
+        return (long) ((int) ref + offset) << 32 | length;
+    }
+
+    // A record of the given length is no longer referenced
+    public void free(int length) {
+        liveBytes -= length;
+        deadBytes += length;
+    }
+
+    // Whether more bytes are dead than live, so a compaction would at least halve the arena
+    public boolean needsCompaction() {
+        return deadBytes > MIN_CHUNK_SIZE && deadBytes > liveBytes;
+    }
+
+    // Copy the live records (firstLengths[row] >= 0) into fresh chunks in row order and update their references;
+    // when trimming, the chunks are sized to fit with no spare room
+    public void compact(long[] refs, int[] firstLengths, int[] secondLengths, int rows, boolean trim) {
+        List<Chunk> old = chunks;
+        chunks = new ArrayList<>();
+        long remaining = liveBytes;
+        liveBytes = 0;
+        deadBytes = 0;
+        Chunk target = null;
+        for (int row = 0; row < rows; row++) {
+            if (firstLengths[row] < 0) continue;
+            int length = firstLengths[row] + secondLengths[row];
+            if (target == null || target.buffer.capacity() - target.used < length) {
+                long size = trim ? remaining : Math.max(MIN_CHUNK_SIZE, remaining + remaining / 2);
+                target = allocate(Math.max(length, (int) Math.min(MAX_CHUNK_SIZE, size)));
+            }
+            Chunk source = old.get((int) (refs[row] >>> 32));
+            int from = (int) refs[row];
+            ByteBuffer slice = source.buffer.slice(from, length);
+            target.buffer.put(target.used, slice, 0, length);
+            refs[row] = (long) (chunks.size() - 1) << 32 | target.used;
+            target.used += length;
+            liveBytes += length;
+            remaining -= length;
+        }
+    }
+
+    // Drop every record
+    public void clear() {
+        chunks = new ArrayList<>();
+        liveBytes = 0;
+        deadBytes = 0;
+    }
+
+    private Chunk allocate(int size) {
+        Chunk chunk = new Chunk(offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size));
+        chunks.add(chunk);
+        return chunk;
+    }
+
+    // One buffer of records; as a content loader it decodes (offset << 32 | length) references
+    static final class Chunk implements ContentCache.Loader {
+        private final ByteBuffer buffer;
+        private int used;
+
+        Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public String load(long ref) {
+            return decode((int) (ref >>> 32), (int) ref);
+        }
+
+        String decode(int offset, int length) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Time-ordered index of notes for time-windowed queries.
+ * Entries are kept in two parallel arrays, a sorted long[] of timestamps
+ * (epoch millis) and the matching int[] of ids, ordered by timestamp and
+ * then id. A range or latest-N query is a binary search followed by a walk
+ * over the k matches, so it costs O(log n + k) with no per-entry objects.
+ * Notes mostly arrive in time order, so adding one is usually an append;
+ * an out-of-order add or a delete shifts the tail of the arrays.
+ */
+public class TimeIndex {
+    private long[] times = new long[16];
+    private int[] ids = new int[16];
+    private int size;
+    // False after append() added entries out of order; sort() restores the order
+    private boolean sorted = true;
+
+    public void add(int id, long time) {
+        int position = size == 0 || compare(time, id, size - 1) > 0 ? size : search(time, id);
+        if (position < size && times[position] == time && ids[position] == id) {
+            return;
+        }
+        grow();
+        System.arraycopy(times, position, times, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        times[position] = time;
+        ids[position] = id;
+        size++;
+    }
+
+    public void remove(int id, long time) {
+        int position = search(time, id);
+        if (position < size && times[position] == time && ids[position] == id) {
+            System.arraycopy(times, position + 1, times, position, size - position - 1);
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+    }
+
+    // Bulk load: add entries in any order, then call sort() once before querying
+    public void append(int id, long time) {
+        if (size > 0 && compare(time, id, size - 1) < 0) {
+            sorted = false;
+        }
+        grow();
+        times[size] = time;
+        ids[size] = id;
+        size++;
+    }
+
+    // Restore time order after append(); a no-op when entries arrived in order
+    public void sort() {
+        if (!sorted) {
+            mergeSort(new long[size], new int[size], 0, size);
+            sorted = true;
+        }
+    }
+
+    public void clear() {
+        times = new long[16];
+        ids = new int[16];
+        size = 0;
+        sorted = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Ids of up to limit notes with from <= timestamp <= to, oldest first; none for a limit <= 0
+    public int[] between(long from, long to, int limit) {
+        if (from > to || limit <= 0) return new int[0];
+        int start = search(from, Integer.MIN_VALUE);
+        int end = search(to, Integer.MAX_VALUE);
+        if (end < size && times[end] == to) {
+            end++;
+        }
+        return Arrays.copyOfRange(ids, start, start + Math.min(limit, end - start));
+    }
+
+    // Ids of the limit most recent notes, newest first; none for a limit <= 0
+    public int[] latest(int limit) {
+        int count = Math.max(0, Math.min(limit, size));
+        int[] latest = new int[count];
+        for (int i = 0; i < count; i++) {
+            latest[i] = ids[size - 1 - i];
+        }
+        return latest;
+    }
+
+    // First position whose entry is not before (time, id)
+    private int search(long time, int id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(time, id, mid) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(long time, int id, int position) {
+        int byTime = Long.compare(time, times[position]);
+        return byTime != 0 ? byTime : Integer.compare(id, ids[position]);
+    }
+
+    private void grow() {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+    }
+
+    // Stable merge sort of [from, to) on both arrays at once
+    private void mergeSort(long[] timeBuffer, int[] idBuffer, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(timeBuffer, idBuffer, from, mid);
+        mergeSort(timeBuffer, idBuffer, mid, to);
+        if (compare(times[mid], ids[mid], mid - 1) > 0) return;
+        System.arraycopy(times, from, timeBuffer, from, to - from);
+        System.arraycopy(ids, from, idBuffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            boolean takeLeft = right >= to || (left < mid && (timeBuffer[left] < timeBuffer[right]
+                    || timeBuffer[left] == timeBuffer[right] && idBuffer[left] <= idBuffer[right]));
+            int source = takeLeft ? left++ : right++;
+            times[i] = timeBuffer[source];
+            ids[i] = idBuffer[source];
+        }
+    }
+}
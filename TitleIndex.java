@@ -0,0 +1,71 @@
+import java.util.*;
+
+/**
+ * Sorted index of note titles for prefix search and autocompletion.
+ * Lowercased titles are kept in a TreeMap, each with the sorted ids of
+ * the notes carrying that title, so a prefix query is one O(log n) seek
+ * followed by a walk over the k matching entries.
+ */
+public class TitleIndex {
+    private final TreeMap<String, InvertedIndex.PostingList> titles = new TreeMap<>();
+
+    public void add(int id, String title) {
+        titles.computeIfAbsent(key(title), k -> new InvertedIndex.PostingList()).add(id);
+    }
+
+    public void remove(int id, String title) {
+        String key = key(title);
+        InvertedIndex.PostingList ids = titles.get(key);
+        if (ids != null && ids.remove(id) && ids.size() == 0) {
+            titles.remove(key);
+        }
+    }
+
+    public void clear() {
+        titles.clear();
+    }
+
+    // Number of distinct titles
+    public int size() {
+        return titles.size();
+    }
+
+    // Ids of up to limit notes whose title starts with the prefix (ignoring case), in title order
+    public int[] withPrefix(String prefix, int limit) {
+        int[] ids = new int[Math.min(limit, 64)];
+        int count = 0;
+        for (InvertedIndex.PostingList list : range(prefix).values()) {
+            for (int i = 0; i < list.size() && count < limit; i++) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.min(limit, count * 2));
+                }
+                ids[count++] = list.get(i);
+            }
+            if (count == limit) break;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // One note id per distinct title starting with the prefix, for up to limit titles in title order
+    public int[] completions(String prefix, int limit) {
+        int[] ids = new int[Math.min(limit, 64)];
+        int count = 0;
+        for (InvertedIndex.PostingList list : range(prefix).values()) {
+            if (count == limit) break;
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.min(limit, count * 2));
+            }
+            ids[count++] = list.get(0);
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private SortedMap<String, InvertedIndex.PostingList> range(String prefix) {
+        String from = key(prefix);
+        return titles.subMap(from, from + Character.MAX_VALUE);
+    }
+
+    private static String key(String title) {
+        return title.toLowerCase();
+    }
+}
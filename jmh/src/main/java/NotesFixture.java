@@ -0,0 +1,99 @@
+import java.io.FileWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import notes.jmh.Fixture;
+
+/**
+ * Fixture for the JMH benchmarks over a NotesApp, built from the same
+ * synthetic corpus as NotesBenchmark. Progress messages printed by the app
+ * are discarded so they do not interleave with the JMH output.
+ */
+public class NotesFixture implements Fixture {
+    private Path dir;
+    private NotesApp app;
+    private List<NotesApp.Note> corpus;
+    private String[] lines;
+
+    @Override
+    public void open(Path dir, int size) throws Exception {
+        this.dir = dir;
+        corpus = NotesBenchmark.corpus(size);
+        lines = new String[size];
+        List<String[]> drafts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            NotesApp.Note note = corpus.get(i);
+            lines[i] = note.toFileFormat();
+            drafts.add(new String[] {note.getTitle(), note.getContent()});
+        }
+        app = NotesBenchmark.quietly(() -> new NotesApp(dir.toFile()));
+        NotesBenchmark.quietly(() -> app.addNotes(drafts));
+        NotesBenchmark.quietly(() -> { app.compactLog(); return null; });
+    }
+
+    @Override
+    public String line(int index) { return lines[index]; }
+
+    @Override
+    public String toFileFormat(int index) { return corpus.get(index).toFileFormat(); }
+
+    @Override
+    public int fromFileFormat(String line) { return NotesApp.Note.fromFileFormat(line).getId(); }
+
+    @Override
+    public String word(int n) { return NotesBenchmark.word(n); }
+
+    @Override
+    public int vocabularySize() { return NotesBenchmark.VOCABULARY_SIZE; }
+
+    @Override
+    public void save() {
+        quietly(app::compactLog);
+    }
+
+    @Override
+    public void load() {
+        quietly(() -> app.loadNotesFromFile(false));
+    }
+
+    @Override
+    public int search(String term) { return app.findNotes(term).size(); }
+
+    @Override
+    public int rankedSearch(String query, int limit) { return app.getStore().rankedSearch(query, limit).size(); }
+
+    @Override
+    public boolean delete(int id) { return app.deleteNoteById(id); }
+
+    @Override
+    public int add(String title, String content) { return app.getStore().add(title, content).getId(); }
+
+    @Override
+    public int get(int id) {
+        NotesApp.Note note = app.getStore().get(id);
+        return note == null ? 0 : note.getTitle().length();
+    }
+
+    @Override
+    public void restore() throws Exception {
+        app.awaitDurable();
+        new FileWriter(dir.resolve("notes.log").toFile()).close();
+        load();
+    }
+
+    @Override
+    public void close() throws Exception {
+        NotesBenchmark.quietly(() -> { app.closePersistence(); return null; });
+    }
+
+    private static void quietly(Runnable action) {
+        try {
+            NotesBenchmark.quietly(() -> { action.run(); return null; });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
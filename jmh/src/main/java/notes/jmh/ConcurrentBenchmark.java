@@ -0,0 +1,67 @@
+package notes.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Four threads sharing one NotesStore, each cycling through add, delete
+ * (of a note it added or of a random corpus note), keyword search and get,
+ * like the concurrent workload of NotesBenchmark. The corpus is restored
+ * from the snapshot between iterations.
+ */
+@Threads(4)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConcurrentBenchmark extends NotesState {
+    private final AtomicInteger workers = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void restore() throws Exception {
+        notes.restore();
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        int index;
+        Random random;
+        List<Integer> own;
+        int step;
+
+        @Setup(Level.Trial)
+        public void open(ConcurrentBenchmark benchmark) {
+            index = benchmark.workers.getAndIncrement();
+            random = new Random(index);
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            // Notes added in the last iteration were dropped by the restore
+            own = new ArrayList<>();
+        }
+    }
+
+    @Benchmark
+    public int mixed(Worker worker) {
+        switch (worker.step++ & 3) {
+            case 0: {
+                String marker = "stress" + worker.index + "x" + worker.step;
+                int id = notes.add(marker, "concurrent " + marker);
+                worker.own.add(id);
+                return id;
+            }
+            case 1: {
+                int id = worker.own.isEmpty() || worker.random.nextBoolean()
+                        ? 1 + worker.random.nextInt(size) : worker.own.remove(worker.own.size() - 1);
+                return notes.delete(id) ? 1 : 0;
+            }
+            case 2:
+                return notes.search(notes.word(worker.random.nextInt(notes.vocabularySize())));
+            default:
+                return notes.get(1 + worker.random.nextInt(size));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package notes.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Delete by id. Each measured iteration deletes a batch of random ids and
+ * the corpus is restored from the snapshot between iterations, so the
+ * score is the time for the whole batch.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = DeleteBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = DeleteBenchmark.BATCH)
+public class DeleteBenchmark extends NotesState {
+    static final int BATCH = 1000;
+
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void restore() throws Exception {
+        notes.restore();
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public boolean delete() {
+        return notes.delete(1 + random.nextInt(size));
+    }
+}
@@ -0,0 +1,30 @@
+package notes.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Note.toFileFormat() and Note.fromFileFormat() of one note, cycling
+ * through the corpus.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FileFormatBenchmark extends NotesState {
+    private int next;
+
+    @Benchmark
+    public String toFileFormat() {
+        return notes.toFileFormat(next());
+    }
+
+    @Benchmark
+    public int fromFileFormat() {
+        return notes.fromFileFormat(notes.line(next()));
+    }
+
+    private int next() {
+        int index = next;
+        next = index + 1 == size ? 0 : index + 1;
+        return index;
+    }
+}
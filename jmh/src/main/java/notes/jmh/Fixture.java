@@ -0,0 +1,51 @@
+package notes.jmh;
+
+import java.nio.file.Path;
+
+/**
+ * Bridge from the benchmarks to the app. JMH only accepts benchmarks in a
+ * named package, and a named package cannot refer to the app's
+ * default-package classes, so the default-package NotesFixture implements
+ * this interface and is loaded by name.
+ */
+public interface Fixture {
+    // Open a NotesApp in the directory holding a compacted snapshot of the synthetic corpus of the given size
+    void open(Path dir, int size) throws Exception;
+
+    // Corpus note with the given index, in the notes.txt line format
+    String line(int index);
+
+    // Note.toFileFormat() of the corpus note with the given index
+    String toFileFormat(int index);
+
+    // Id of the note parsed by Note.fromFileFormat()
+    int fromFileFormat(String line);
+
+    // Word of the corpus vocabulary; every 1000th note also carries one of "rare0".."rare9"
+    String word(int n);
+
+    int vocabularySize();
+
+    // Write a snapshot and truncate the log, waiting for it to finish
+    void save();
+
+    // Full load of the snapshot and log
+    void load();
+
+    int search(String term);
+
+    int rankedSearch(String query, int limit);
+
+    boolean delete(int id);
+
+    // Add a note straight to the shared store; returns its id
+    int add(String title, String content);
+
+    // Fetch a note from the shared store; returns its title length, or 0 when it is gone
+    int get(int id);
+
+    // Drop every change since the snapshot and reload it, undoing deletes and adds
+    void restore() throws Exception;
+
+    void close() throws Exception;
+}
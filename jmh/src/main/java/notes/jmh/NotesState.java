@@ -0,0 +1,44 @@
+package notes.jmh;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shared setup of the benchmarks: a NotesApp over a compacted snapshot of
+ * the synthetic corpus in a temporary directory, at each corpus size.
+ * Background compaction is disabled so destructive benchmarks can restore
+ * the corpus from the snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dnotes.compactionRecords=2147483647"})
+@State(Scope.Benchmark)
+public abstract class NotesState {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    protected Fixture notes;
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("notes-jmh");
+        notes = (Fixture) Class.forName("NotesFixture").getDeclaredConstructor().newInstance();
+        notes.open(dir, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        notes.close();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package notes.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Full snapshot save (compaction) and full load of the snapshot and log.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark extends NotesState {
+    @Benchmark
+    public void save() {
+        notes.save();
+    }
+
+    @Benchmark
+    public void load() {
+        notes.load();
+    }
+}
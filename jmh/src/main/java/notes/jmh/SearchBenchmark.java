@@ -0,0 +1,38 @@
+package notes.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Keyword search and top-10 BM25 ranked search for common vocabulary words
+ * and for rare words carried by one note in a thousand.
+ */
+public class SearchBenchmark extends NotesState {
+    private int next;
+
+    @Benchmark
+    public int search() {
+        return notes.search(notes.word(nextWord()));
+    }
+
+    @Benchmark
+    public int searchRare() {
+        return notes.search("rare" + nextWord() % 10);
+    }
+
+    @Benchmark
+    public int rankedSearch() {
+        return notes.rankedSearch(notes.word(nextWord()), 10);
+    }
+
+    @Benchmark
+    public int rankedSearchTwoWords() {
+        int word = nextWord();
+        return notes.rankedSearch(notes.word(word) + " " + notes.word(word * 53 % notes.vocabularySize()), 10);
+    }
+
+    // Steps through the vocabulary in a fixed scattered order
+    private int nextWord() {
+        next = (next + 37) % notes.vocabularySize();
+        return next;
+    }
+}